@@ -1,6 +1,8 @@
 package filters;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
+import java.util.Arrays;
 
 /**
  * Die abstrakte Klasse AreaFilter implementiert das Filter-Interface und bietet eine gemeinsame Basis für Filter, die auf
@@ -50,80 +52,204 @@ public abstract class AreaFilter implements Filter {
      */
     public BufferedImage process(BufferedImage... images) {
         BufferedImage sourceImage = images[0];
-        BufferedImage mask = images[1];
+        BufferedImage mask = images.length > 1 ? images[1] : null;
+        if (useMask && mask == null) {
+            throw new IllegalArgumentException("No mask image provided.");
+        }
         int width = sourceImage.getWidth();
         int height = sourceImage.getHeight();
         int blockCountX = width / blockSize;
         int blockCountY = height / blockSize;
         BufferedImage resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
-        // Verarbeite das Bild, ohne die Maske zu berücksichtigen
-        for (int blockY = 0; blockY < blockCountY; blockY++) {
-            for (int blockX = 0; blockX < blockCountX; blockX++) {
-                int startX = blockX * blockSize;
-                int startY = blockY * blockSize;
-                int endX = startX + blockSize;
-                int endY = startY + blockSize;
-
-                int[] pixels = new int[blockSize * blockSize];
-                int[] maskPixels = new int[blockSize * blockSize];
-                int index = 0;
-
-                if (!useMask) {
-                    // Sammle Pixel ohne Maske
-                    for (int y = startY; y < endY; y++) {
-                        for (int x = startX; x < endX; x++) {
-                            pixels[index] = sourceImage.getRGB(x, y);
-                            index++;
-                        }
-                    }
+        // Die Pixel werden einmalig als Array gelesen und am Ende gesammelt zurückgeschrieben
+        int[] source = sourceImage.getRGB(0, 0, width, height, null, 0, width);
+        int[] maskData = useMask ? mask.getRGB(0, 0, width, height, null, 0, width) : null;
+        int[] result = new int[width * height];
 
-                    if (index > 0) {
-                        int blockColor = calculatePixel(pixels, index, blockSize);
+        // Streifen bestehen aus ganzen Blockzeilen, damit jeder Block genau einem Streifen gehört
+        ExecutionProfile profile = AutoTuner.profileFor(getClass(), width, height);
+        int blockRowsPerStrip = Math.max(1, profile.getTileHeight() / blockSize);
+        Parallel.forEachStrip(blockCountY, blockRowsPerStrip, profile.getThreads(), (fromBlockY, toBlockY) -> {
+            int[] pixels = new int[blockSize * blockSize];
+            int[] maskPixels = new int[blockSize * blockSize];
+            for (int blockY = fromBlockY; blockY < toBlockY; blockY++) {
+                for (int blockX = 0; blockX < blockCountX; blockX++) {
+                    processBlock(source, maskData, result, width, blockX * blockSize, blockY * blockSize, pixels, maskPixels);
+                }
+            }
+        });
+        resultImage.setRGB(0, 0, width, height, result, 0, width);
+        return resultImage;
+    }
 
-                        for (int y = startY; y < endY; y++) {
-                            for (int x = startX; x < endX; x++) {
-                                resultImage.setRGB(x, y, blockColor);
-                            }
-                        }
-                    }
-                } else if (useMask) {
-                    for (int y = startY; y < endY; y++) {
-                        for (int x = startX; x < endX; x++) {
-                            int maskRGB = mask.getRGB(x, y);
-                            if ((maskRGB & 0x00FFFFFF) != 0x00000000) {
-                                pixels[index] = sourceImage.getRGB(x, y);
-                                maskPixels[index] = maskRGB;
-                                index++;
-                            }
-                        }
+    /**
+     * Gibt an, ob der Filter auf festen Blöcken arbeitet, deren Ergebnis nur von den Pixeln des Blocks abhängt.
+     * Unterklassen mit gleitendem Fenster überschreiben process und liefern hier false.
+     *
+     * @return true, wenn processBlock das Ergebnis des Filters liefert
+     */
+    boolean isBlockwise() {
+        return true;
+    }
+
+    /**
+     * Verarbeitet einen einzelnen Block auf Pixel-Arrays. Quelle, Maske und Ergebnis haben dieselbe Zeilenlänge;
+     * die Ergebniswerte werden wie beim Zurücklesen aus einem TYPE_INT_RGB-Bild mit vollem Alpha abgelegt.
+     *
+     * @param source     Die Quellpixel.
+     * @param mask       Die Maskenpixel oder null, wenn keine Maske verwendet wird.
+     * @param result     Das Array, in das der Block geschrieben wird.
+     * @param stride     Die Zeilenlänge der Arrays.
+     * @param startX     Die linke Kante des Blocks.
+     * @param startY     Die obere Kante des Blocks.
+     * @param pixels     Ein Hilfsarray mit mindestens blockSize * blockSize Einträgen.
+     * @param maskPixels Ein Hilfsarray mit mindestens blockSize * blockSize Einträgen.
+     */
+    void processBlock(int[] source, int[] mask, int[] result, int stride, int startX, int startY,
+            int[] pixels, int[] maskPixels) {
+        int endX = startX + blockSize;
+        int endY = startY + blockSize;
+        int index = 0;
+
+        if (!useMask) {
+            // Sammle Pixel ohne Maske
+            for (int y = startY; y < endY; y++) {
+                for (int x = startX; x < endX; x++) {
+                    pixels[index] = source[y * stride + x];
+                    index++;
+                }
+            }
+
+            int blockColor = 0xFF000000 | calculatePixel(pixels, index, blockSize);
+            for (int y = startY; y < endY; y++) {
+                for (int x = startX; x < endX; x++) {
+                    result[y * stride + x] = blockColor;
+                }
+            }
+        } else {
+            for (int y = startY; y < endY; y++) {
+                for (int x = startX; x < endX; x++) {
+                    int maskRGB = mask[y * stride + x];
+                    if ((maskRGB & 0x00FFFFFF) != 0x00000000) {
+                        pixels[index] = source[y * stride + x];
+                        maskPixels[index] = maskRGB;
+                        index++;
                     }
+                }
+            }
 
-                    if (index > 0) {
-                        int blockColor = calculatePixel(pixels, maskPixels, index, blockSize);
-
-                        for (int y = startY; y < endY; y++) {
-                            for (int x = startX; x < endX; x++) {
-                                int maskRGB = mask.getRGB(x, y);
-                                int original = sourceImage.getRGB(x, y);
-                                if ((maskRGB & 0x00FFFFFF) == 0x00000000) {
-                                    resultImage.setRGB(x, y, original);
-                                } else {
-                                    resultImage.setRGB(x, y, blockColor);
-                                }
-                            }
-                        }
-                    } else {
-                        for (int y = startY; y < endY; y++) {
-                            for (int x = startX; x < endX; x++) {
-                                int original = sourceImage.getRGB(x, y);
-                                resultImage.setRGB(x, y, original);
-                            }
+            if (index > 0) {
+                int blockColor = 0xFF000000 | calculatePixel(pixels, maskPixels, index, blockSize);
+
+                for (int y = startY; y < endY; y++) {
+                    for (int x = startX; x < endX; x++) {
+                        int i = y * stride + x;
+                        if ((mask[i] & 0x00FFFFFF) == 0x00000000) {
+                            result[i] = 0xFF000000 | source[i];
+                        } else {
+                            result[i] = blockColor;
                         }
                     }
                 }
+            } else {
+                for (int y = startY; y < endY; y++) {
+                    for (int x = startX; x < endX; x++) {
+                        int i = y * stride + x;
+                        result[i] = 0xFF000000 | source[i];
+                    }
+                }
             }
         }
-        return resultImage;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[blockSize=" + blockSize + ", mask=" + useMask + "]";
+    }
+
+    /**
+     * Liefert den Eingangsausschnitt, der für einen Ausgabeausschnitt benötigt wird: alle Blöcke, die den Ausschnitt
+     * schneiden, zusammen mit dem Ausschnitt selbst.
+     *
+     * @param region Der Ausgabeausschnitt.
+     * @param width  Die Breite des Gesamtbilds.
+     * @param height Die Höhe des Gesamtbilds.
+     * @return Der benötigte Eingangsausschnitt.
+     */
+    Rectangle requiredRegion(Rectangle region, int width, int height) {
+        int gridWidth = (width / blockSize) * blockSize;
+        int gridHeight = (height / blockSize) * blockSize;
+        int startX = (region.x / blockSize) * blockSize;
+        int startY = (region.y / blockSize) * blockSize;
+        int endX = Math.min(gridWidth, ceilToBlock(region.x + region.width));
+        int endY = Math.min(gridHeight, ceilToBlock(region.y + region.height));
+        if (startX >= endX || startY >= endY) {
+            // Der Ausschnitt liegt außerhalb vollständiger Blöcke und bleibt schwarz
+            return region;
+        }
+        return region.union(new Rectangle(startX, startY, endX - startX, endY - startY));
+    }
+
+    /**
+     * Berechnet einen Ausgabeausschnitt aus einem Eingangsausschnitt, der requiredRegion enthält.
+     *
+     * @param source       Die Pixel des Eingangsausschnitts.
+     * @param mask         Die Maskenpixel mit derselben Geometrie wie source oder null.
+     * @param sourceRegion Der Eingangsausschnitt.
+     * @param result       Das Array für die Pixel des Ausgabeausschnitts.
+     * @param resultRegion Der Ausgabeausschnitt.
+     * @param width        Die Breite des Gesamtbilds.
+     * @param height       Die Höhe des Gesamtbilds.
+     */
+    void processRegion(int[] source, int[] mask, Rectangle sourceRegion, int[] result, Rectangle resultRegion,
+            int width, int height) {
+        if (useMask && mask == null) {
+            throw new IllegalArgumentException("No mask image provided.");
+        }
+        int[] blocks = new int[sourceRegion.width * sourceRegion.height];
+        // Pixel außerhalb vollständiger Blöcke bleiben wie bei process schwarz
+        Arrays.fill(blocks, 0xFF000000);
+        int[] pixels = new int[blockSize * blockSize];
+        int[] maskPixels = new int[blockSize * blockSize];
+
+        int blockCountX = width / blockSize;
+        int blockCountY = height / blockSize;
+        int fromBlockX = resultRegion.x / blockSize;
+        int fromBlockY = resultRegion.y / blockSize;
+        int toBlockX = Math.min(blockCountX, ceilToBlock(resultRegion.x + resultRegion.width) / blockSize);
+        int toBlockY = Math.min(blockCountY, ceilToBlock(resultRegion.y + resultRegion.height) / blockSize);
+        for (int blockY = fromBlockY; blockY < toBlockY; blockY++) {
+            for (int blockX = fromBlockX; blockX < toBlockX; blockX++) {
+                processBlock(source, mask, blocks, sourceRegion.width, blockX * blockSize - sourceRegion.x,
+                        blockY * blockSize - sourceRegion.y, pixels, maskPixels);
+            }
+        }
+        int[] cropped = Regions.crop(blocks, sourceRegion, resultRegion);
+        System.arraycopy(cropped, 0, result, 0, cropped.length);
+    }
+
+    /**
+     * Rundet eine Koordinate auf die nächste Blockgrenze auf.
+     *
+     * @param coordinate Die Koordinate.
+     * @return Die aufgerundete Koordinate.
+     */
+    private int ceilToBlock(int coordinate) {
+        return ((coordinate + blockSize - 1) / blockSize) * blockSize;
+    }
+
+    /**
+     * Schätzt den Speicher, den process zusätzlich zu den Eingangsbildern belegt: Quell-, Masken- und Ergebnis-Array
+     * sowie das Ergebnisbild.
+     *
+     * @param width    Die Bildbreite.
+     * @param height   Die Bildhöhe.
+     * @param withMask Gibt an, ob eine Maske übergeben wird.
+     * @return Der geschätzte Spitzenbedarf in Bytes.
+     */
+    long estimatePeakBytes(int width, int height, boolean withMask) {
+        long imageBytes = 4L * width * height;
+        return (useMask ? 4 : 3) * imageBytes;
     }
 }
\ No newline at end of file
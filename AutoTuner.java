@@ -0,0 +1,362 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Der AutoTuner ermittelt für jeden Filtertyp und jede Größenklasse das schnellste {@link ExecutionProfile}.
+ * <p>
+ * Bei der Kalibrierung wird jeder Filter auf synthetischen Bildern der Größenklassen S (unter 1 MP), M (unter 4 MP)
+ * und L (unter 16 MP) gemessen, wie in Main mit Bild und Maske. Langsame Läufe werden nicht wiederholt, damit die
+ * Kalibrierung kurz bleibt. Ausgehend vom Standardprofil werden nacheinander das Verfahren, die Anzahl der Threads
+ * und die Streifenhöhe variiert und jeweils der schnellste Wert übernommen. Die Ergebnisse werden in einer
+ * Properties-Datei gespeichert (Systemeigenschaft {@value #FILE_PROPERTY}, Standard {@value #DEFAULT_FILE}) und
+ * bei späteren Läufen automatisch geladen. Ist die Systemeigenschaft {@value #AUTO_PROPERTY} gesetzt und existiert
+ * noch keine Datei, wird beim ersten Zugriff mit den eingebauten Filtern kalibriert.
+ * <p>
+ * Für Filtertypen ohne eigenen Eintrag gilt der Eintrag der nächsten Oberklasse; für größere Bilder als die größte
+ * kalibrierte Klasse gilt deren Eintrag.
+ */
+public final class AutoTuner {
+    /** Systemeigenschaft mit dem Pfad der Kalibrierungsdatei. */
+    public static final String FILE_PROPERTY = "filters.tuning.file";
+    /** Systemeigenschaft, die die Kalibrierung beim ersten Zugriff einschaltet. */
+    public static final String AUTO_PROPERTY = "filters.tuning.auto";
+    /** Der Standardpfad der Kalibrierungsdatei. */
+    public static final String DEFAULT_FILE = "filter-tuning.properties";
+
+    private static final String[] BUCKETS = { "S", "M", "L", "XL" };
+    private static final long[] BUCKET_LIMITS = { 1L << 20, 4L << 20, 16L << 20, Long.MAX_VALUE };
+    private static final int[] CALIBRATION_SIZES = { 768, 1448, 2048 };
+    private static final int[] TILE_HEIGHTS = { 16, 64, 256, 1024 };
+    private static final int RUNS = 2;
+    private static final long LONG_RUN_NANOS = 250_000_000L;
+
+    private static final ThreadLocal<ExecutionProfile> FORCED = new ThreadLocal<>();
+    private static Map<String, ExecutionProfile> profiles;
+
+    private AutoTuner() {
+    }
+
+    /**
+     * Liefert das Profil für einen Filtertyp und eine Bildgröße.
+     *
+     * @param filterType der Filtertyp
+     * @param width      die Bildbreite
+     * @param height     die Bildhöhe
+     * @return das kalibrierte Profil oder {@link ExecutionProfile#DEFAULT}
+     */
+    public static ExecutionProfile profileFor(Class<?> filterType, int width, int height) {
+        ExecutionProfile forced = FORCED.get();
+        if (forced != null) {
+            return forced;
+        }
+        Map<String, ExecutionProfile> known = profiles();
+        int bucket = bucketOf(width, height);
+        for (Class<?> type = filterType; type != null && type != Object.class; type = type.getSuperclass()) {
+            for (int b = bucket; b >= 0; b--) {
+                ExecutionProfile profile = known.get(key(type, b));
+                if (profile != null) {
+                    return profile;
+                }
+            }
+        }
+        return ExecutionProfile.DEFAULT;
+    }
+
+    /**
+     * Führt eine Aktion im aktuellen Thread mit einem festen Profil für alle Filter aus.
+     *
+     * @param profile das zu verwendende Profil
+     * @param action  die Aktion
+     * @return das Ergebnis der Aktion
+     */
+    public static <T> T withProfile(ExecutionProfile profile, Supplier<T> action) {
+        ExecutionProfile previous = FORCED.get();
+        FORCED.set(profile);
+        try {
+            return action.get();
+        } finally {
+            if (previous != null) {
+                FORCED.set(previous);
+            } else {
+                FORCED.remove();
+            }
+        }
+    }
+
+    /**
+     * Kalibriert die eingebauten Filter und speichert das Ergebnis.
+     *
+     * @return die ermittelten Profile je Filtertyp und Größenklasse
+     * @throws IOException wenn die Kalibrierungsdatei nicht geschrieben werden kann
+     */
+    public static Map<String, ExecutionProfile> calibrate() throws IOException {
+        return calibrate(new MonochromeFilter(), new ColorBandFilter(ColorBandFilter.ColorBand.ROT),
+                new ThresholdFilter(64, 128, 192), new ColorReplacementFilter(0, 96, 160, 255),
+                new PseudoNegativeImage(), new BlurFilter(5, false), new PixelGraphicFilter(10, false),
+                new MedianFilter(2, false));
+    }
+
+    /**
+     * Kalibriert die Typen der gegebenen Filter und speichert das Ergebnis zusammen mit bereits bekannten Profilen.
+     * Für eine ChainFilter werden die Typen ihrer Stufen kalibriert; die Kette leitet ihr Profil daraus ab.
+     *
+     * @param filters die Filter, deren Typen kalibriert werden
+     * @return die ermittelten Profile je Filtertyp und Größenklasse
+     * @throws IOException wenn die Kalibrierungsdatei nicht geschrieben werden kann
+     */
+    public static synchronized Map<String, ExecutionProfile> calibrate(Filter... filters) throws IOException {
+        Map<String, ExecutionProfile> calibrated = measureAll(filters);
+        Map<String, ExecutionProfile> merged = new HashMap<>(loadedProfiles());
+        merged.putAll(calibrated);
+        profiles = merged;
+        save(merged);
+        return calibrated;
+    }
+
+    /**
+     * Verwirft die geladenen Profile; beim nächsten Zugriff wird die Kalibrierungsdatei neu gelesen.
+     */
+    public static synchronized void reload() {
+        profiles = null;
+    }
+
+    /**
+     * Liefert den Pfad der Kalibrierungsdatei.
+     *
+     * @return der Pfad
+     */
+    public static Path getTuningFile() {
+        return Paths.get(System.getProperty(FILE_PROPERTY, DEFAULT_FILE));
+    }
+
+    /**
+     * Liefert die bekannten Profile und lädt sie beim ersten Aufruf.
+     */
+    private static synchronized Map<String, ExecutionProfile> profiles() {
+        if (profiles == null) {
+            profiles = loadedProfiles();
+            if (profiles.isEmpty() && !Files.exists(getTuningFile()) && Boolean.getBoolean(AUTO_PROPERTY)) {
+                try {
+                    calibrate();
+                } catch (IOException e) {
+                    // Die Ergebnisse bleiben für diesen Lauf im Speicher erhalten
+                }
+            }
+        }
+        return profiles;
+    }
+
+    /**
+     * Liest die Kalibrierungsdatei. Fehlt sie oder ist sie unlesbar, gelten die Standardprofile.
+     */
+    private static Map<String, ExecutionProfile> loadedProfiles() {
+        if (profiles != null) {
+            return profiles;
+        }
+        Map<String, ExecutionProfile> loaded = new HashMap<>();
+        Path file = getTuningFile();
+        if (!Files.exists(file)) {
+            return loaded;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+            for (String name : properties.stringPropertyNames()) {
+                loaded.put(name, ExecutionProfile.parse(properties.getProperty(name)));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return new HashMap<>();
+        }
+        return loaded;
+    }
+
+    /**
+     * Schreibt die Profile sortiert, damit die Datei zwischen Läufen vergleichbar bleibt.
+     */
+    private static void save(Map<String, ExecutionProfile> profilesToSave) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add("# Filter execution profiles, written by " + AutoTuner.class.getName());
+        for (Map.Entry<String, ExecutionProfile> entry : new TreeMap<>(profilesToSave).entrySet()) {
+            lines.add(entry.getKey() + "=" + entry.getValue());
+        }
+        Files.write(getTuningFile(), lines, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Misst alle Filtertypen in allen kalibrierten Größenklassen.
+     */
+    private static Map<String, ExecutionProfile> measureAll(Filter... filters) {
+        List<Filter> candidates = new ArrayList<>();
+        addCandidates(Arrays.asList(filters), candidates);
+
+        Map<String, ExecutionProfile> result = new HashMap<>();
+        for (int bucket = 0; bucket < CALIBRATION_SIZES.length; bucket++) {
+            int size = CALIBRATION_SIZES[bucket];
+            BufferedImage image = createSyntheticImage(size, size, new Random(bucket));
+            BufferedImage mask = createSyntheticMask(size, size);
+            for (Filter filter : candidates) {
+                String key = key(filter.getClass(), bucket);
+                if (!result.containsKey(key)) {
+                    result.put(key, tune(filter, image, mask));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sammelt die zu kalibrierenden Filter. Eine ChainFilter wird nicht selbst gemessen, sondern durch die Stufen
+     * ihres Plans ersetzt.
+     */
+    private static void addCandidates(List<Filter> filters, List<Filter> candidates) {
+        for (Filter filter : filters) {
+            if (filter instanceof ChainFilter) {
+                addCandidates(((ChainFilter) filter).getPlannedFilters(), candidates);
+            } else {
+                candidates.add(filter);
+            }
+        }
+    }
+
+    /**
+     * Sucht für einen Filter das schnellste Profil, indem nacheinander Verfahren, Threads und Streifenhöhe
+     * variiert werden.
+     */
+    private static ExecutionProfile tune(Filter filter, BufferedImage image, BufferedImage mask) {
+        Candidate best = new Candidate(ExecutionProfile.DEFAULT, measure(filter, ExecutionProfile.DEFAULT, image, mask));
+
+        if (filter instanceof PixelFilter) {
+            for (ExecutionProfile.Backend backend : ExecutionProfile.Backend.values()) {
+                best = best.tryProfile(filter, new ExecutionProfile(best.profile.getThreads(),
+                        best.profile.getTileHeight(), backend), image, mask);
+            }
+        }
+
+        int processors = Runtime.getRuntime().availableProcessors();
+        Set<Integer> threadCounts = new LinkedHashSet<>();
+        threadCounts.add(1);
+        threadCounts.add(Math.max(1, processors / 4));
+        threadCounts.add(Math.max(1, processors / 2));
+        threadCounts.add(processors);
+        for (int threads : threadCounts) {
+            best = best.tryProfile(filter, new ExecutionProfile(threads, best.profile.getTileHeight(),
+                    best.profile.getBackend()), image, mask);
+        }
+
+        for (int tileHeight : TILE_HEIGHTS) {
+            best = best.tryProfile(filter, new ExecutionProfile(best.profile.getThreads(), tileHeight,
+                    best.profile.getBackend()), image, mask);
+        }
+        return best.profile;
+    }
+
+    /**
+     * Das bisher schnellste Profil mit seiner Laufzeit.
+     */
+    private static final class Candidate {
+        private final ExecutionProfile profile;
+        private final long nanos;
+
+        Candidate(ExecutionProfile profile, long nanos) {
+            this.profile = profile;
+            this.nanos = nanos;
+        }
+
+        /**
+         * Misst ein weiteres Profil, sofern es sich vom bisherigen unterscheidet, und liefert den schnelleren Kandidaten.
+         */
+        Candidate tryProfile(Filter filter, ExecutionProfile candidate, BufferedImage image, BufferedImage mask) {
+            if (candidate.toString().equals(profile.toString())) {
+                return this;
+            }
+            long time = measure(filter, candidate, image, mask);
+            return time < nanos ? new Candidate(candidate, time) : this;
+        }
+    }
+
+    /**
+     * Misst die kürzeste Laufzeit eines Filters mit einem Profil. Der erste Lauf dient zum Aufwärmen und wird nur
+     * gewertet, wenn er so lange dauert, dass weitere Läufe die Kalibrierung unnötig verlängern würden.
+     */
+    private static long measure(Filter filter, ExecutionProfile profile, BufferedImage image, BufferedImage mask) {
+        return withProfile(profile, () -> {
+            long start = System.nanoTime();
+            filter.process(image, mask);
+            long first = System.nanoTime() - start;
+            if (first > LONG_RUN_NANOS) {
+                return first;
+            }
+            long best = Long.MAX_VALUE;
+            for (int i = 0; i < RUNS; i++) {
+                start = System.nanoTime();
+                filter.process(image, mask);
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            return best;
+        });
+    }
+
+    private static int bucketOf(int width, int height) {
+        long pixels = (long) width * height;
+        int bucket = 0;
+        while (pixels >= BUCKET_LIMITS[bucket]) {
+            bucket++;
+        }
+        return bucket;
+    }
+
+    private static String key(Class<?> type, int bucket) {
+        return type.getName() + "." + BUCKETS[bucket];
+    }
+
+    /**
+     * Erzeugt ein Kalibrierungsbild aus Farbverläufen, Rauschen und einfarbigen Flächen.
+     */
+    private static BufferedImage createSyntheticImage(int width, int height, Random random) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                int green = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                int blue = ((x / 64 + y / 64) % 2 == 0) ? 40 : (x + y) & 0xFF;
+                pixels[y * width + x] = (red << 16) | (green << 8) | blue;
+            }
+        }
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        image.setRGB(0, 0, width, height, pixels, 0, width);
+        return image;
+    }
+
+    /**
+     * Erzeugt eine Kalibrierungsmaske, die die linke Bildhälfte freigibt.
+     */
+    private static BufferedImage createSyntheticMask(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width / 2; x++) {
+                pixels[y * width + x] = 0xFFFFFF;
+            }
+        }
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        mask.setRGB(0, 0, width, height, pixels, 0, width);
+        return mask;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,462 @@
+package main;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import javax.imageio.ImageIO;
+
+import filters.AutoTuner;
+import filters.ExecutionProfile;
+import filters.Filter;
+
+/**
+ * Der Benchmark misst den gesamten Ablauf von Main für jeden registrierten Filter: Bild und Maske dekodieren, den
+ * Filter anwenden und das Ergebnis als BMP kodieren.
+ * <p>
+ * Gemessen wird auf synthetischen Bildern verschiedener Größe, mit Masken unterschiedlicher Dichte und mit
+ * verschiedenen Thread-Anzahlen. Je Kombination werden Durchsatz, Latenz-Perzentile, Spitzenbedarf des Heaps und
+ * die Zeit der Garbage Collection ausgegeben. Die Prüfsumme des kodierten Ergebnisses wird mit dem Lauf mit der
+ * kleinsten Thread-Anzahl und optional mit einem früheren Bericht verglichen, damit Optimierungen die Ergebnisse
+ * nicht unbemerkt verändern.
+ * <p>
+ * Bilder mit 200 MP benötigen einen Heap von etwa 8 GB ({@code -Xmx8g}).
+ */
+public class Benchmark {
+
+    /**
+     * Die Beschreibung der Optionen.
+     */
+    public static final String USAGE = "Aufruf: java main.Main benchmark [--sizes 1,4,16] [--densities 0,0.5,1]"
+            + " [--threads 1,4] [--iterations 5] [--warmup 1] [--filters name,...] [--seed 42]"
+            + " [--csv datei] [--json datei] [--reference datei]";
+
+    private static final String[] COLUMNS = { "filter", "width", "height", "megapixels", "maskDensity", "threads",
+            "iterations", "throughputMPs", "p50Ms", "p95Ms", "p99Ms", "filterMs", "peakHeapMB", "gcMs", "checksum",
+            "status" };
+
+    private double[] sizes = { 1, 4, 16 };
+    private double[] densities = { 0, 0.5, 1 };
+    private int[] threads;
+    private int iterations = 5;
+    private int warmup = 1;
+    private List<String> filterNames;
+    private long seed = 42;
+    private Path csvFile;
+    private Path jsonFile;
+    private Path referenceFile;
+
+    /**
+     * Erstellt einen Benchmark aus den Kommandozeilenoptionen.
+     *
+     * @param args die Optionen, siehe {@link #USAGE}
+     */
+    public Benchmark(String[] args) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        threads = processors > 1 ? new int[] { 1, processors } : new int[] { 1 };
+
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--sizes":
+                    sizes = parseDoubles(value);
+                    break;
+                case "--densities":
+                    densities = parseDoubles(value);
+                    break;
+                case "--threads":
+                    threads = Arrays.stream(value.split(",")).mapToInt(s -> Integer.parseInt(s.trim()))
+                            .sorted().distinct().toArray();
+                    break;
+                case "--iterations":
+                    iterations = Integer.parseInt(value);
+                    break;
+                case "--warmup":
+                    warmup = Integer.parseInt(value);
+                    break;
+                case "--filters":
+                    filterNames = Arrays.asList(value.split(","));
+                    break;
+                case "--seed":
+                    seed = Long.parseLong(value);
+                    break;
+                case "--csv":
+                    csvFile = Paths.get(value);
+                    break;
+                case "--json":
+                    jsonFile = Paths.get(value);
+                    break;
+                case "--reference":
+                    referenceFile = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option);
+            }
+        }
+
+        if (iterations <= 0 || warmup < 0 || threads.length == 0 || threads[0] <= 0) {
+            throw new IllegalArgumentException("Iterations and thread counts must be positive.");
+        }
+        for (double size : sizes) {
+            if (size <= 0 || size > 200) {
+                throw new IllegalArgumentException("Image sizes must be between 0 and 200 megapixels.");
+            }
+        }
+        for (double density : densities) {
+            if (density < 0 || density > 1) {
+                throw new IllegalArgumentException("Mask densities must be between 0 and 1.");
+            }
+        }
+    }
+
+    /**
+     * Liefert den Startwert für die Testbilder und die Zufallsfarben der Filter.
+     *
+     * @return der Startwert
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Führt den Benchmark aus, gibt die Ergebnisse als CSV aus und schreibt die angeforderten Berichte.
+     *
+     * @param filters die registrierten Filter nach Namen
+     * @return true, wenn alle Prüfsummen mit dem Referenzlauf übereinstimmen
+     * @throws IOException wenn ein Bild nicht kodiert oder ein Bericht nicht gelesen oder geschrieben werden kann
+     */
+    public boolean run(Map<String, Filter> filters) throws IOException {
+        List<String> names = new ArrayList<>(new TreeSet<>(filters.keySet()));
+        if (filterNames != null) {
+            for (String name : filterNames) {
+                if (!filters.containsKey(name)) {
+                    throw new IllegalArgumentException("Unknown filter " + name);
+                }
+            }
+            names = filterNames;
+        }
+        Map<String, String> referenceChecksums = referenceFile != null ? readChecksums(referenceFile) : new HashMap<>();
+
+        List<Result> results = new ArrayList<>();
+        boolean consistent = true;
+        System.out.println(String.join(";", COLUMNS));
+        for (double size : sizes) {
+            int width = (int) Math.max(1, Math.round(Math.sqrt(size * 1e6 * 4 / 3)));
+            int height = (int) Math.max(1, Math.round(size * 1e6 / width));
+            byte[] image = encode(createImage(width, height, new Random(seed)));
+
+            for (double density : densities) {
+                byte[] mask = encode(createMask(width, height, density, new Random(seed + 1)));
+
+                for (String name : names) {
+                    String runChecksum = null;
+                    for (int threadCount : threads) {
+                        Result result = measure(name, filters.get(name), image, mask, width, height, threadCount);
+                        result.density = density;
+
+                        String expected = referenceChecksums.get(result.key());
+                        if (runChecksum == null) {
+                            runChecksum = result.checksum;
+                        }
+                        if (!result.stable) {
+                            result.status = "unstable";
+                        } else if (!result.checksum.equals(runChecksum)
+                                || (expected != null && !result.checksum.equals(expected))) {
+                            result.status = "mismatch";
+                        } else if (expected != null || threadCount != threads[0]) {
+                            result.status = "ok";
+                        } else {
+                            result.status = "reference";
+                        }
+                        consistent &= result.stable && !result.status.equals("mismatch");
+
+                        results.add(result);
+                        System.out.println(String.join(";", result.values()));
+                    }
+                }
+            }
+        }
+
+        if (csvFile != null) {
+            writeCsv(csvFile, results);
+        }
+        if (jsonFile != null) {
+            writeJson(jsonFile, results);
+        }
+        return consistent;
+    }
+
+    /**
+     * Misst einen Filter mit einer festen Thread-Anzahl. Jede Wiederholung dekodiert Bild und Maske, wendet den
+     * Filter wie Main an und kodiert das Ergebnis.
+     */
+    private Result measure(String name, Filter filter, byte[] imageData, byte[] maskData, int width, int height,
+            int threadCount) throws IOException {
+        ExecutionProfile profile = new ExecutionProfile(threadCount, ExecutionProfile.DEFAULT.getTileHeight(),
+                ExecutionProfile.DEFAULT.getBackend());
+        for (int i = 0; i < warmup; i++) {
+            runOnce(filter, imageData, maskData, profile, null);
+        }
+
+        List<MemoryPoolMXBean> heapPools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+                heapPools.add(pool);
+            }
+        }
+        long gcStart = collectionTime();
+
+        Result result = new Result(name, threadCount);
+        long[] latencies = new long[iterations];
+        long[] filterTime = new long[1];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            byte[] output = runOnce(filter, imageData, maskData, profile, filterTime);
+            latencies[i] = System.nanoTime() - start;
+
+            CRC32 crc = new CRC32();
+            crc.update(output);
+            String checksum = String.format("%08x", crc.getValue());
+            if (result.checksum == null) {
+                result.checksum = checksum;
+            } else if (!result.checksum.equals(checksum)) {
+                result.stable = false;
+            }
+        }
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            peakHeap += pool.getPeakUsage().getUsed();
+        }
+        Arrays.sort(latencies);
+        long total = Arrays.stream(latencies).sum();
+
+        result.width = width;
+        result.height = height;
+        result.iterations = iterations;
+        result.throughput = (double) width * height / 1e6 * iterations / (total / 1e9);
+        result.p50 = percentile(latencies, 50) / 1e6;
+        result.p95 = percentile(latencies, 95) / 1e6;
+        result.p99 = percentile(latencies, 99) / 1e6;
+        result.filterMillis = filterTime[0] / 1e6 / iterations;
+        result.peakHeapMegabytes = peakHeap / (1024.0 * 1024.0);
+        result.gcMillis = collectionTime() - gcStart;
+        return result;
+    }
+
+    /**
+     * Führt den Ablauf von Main einmal aus und liefert das kodierte Ergebnis.
+     *
+     * @param filterTime wenn nicht null, wird die Zeit des Filters in Nanosekunden im ersten Element aufsummiert
+     */
+    private static byte[] runOnce(Filter filter, byte[] imageData, byte[] maskData, ExecutionProfile profile,
+            long[] filterTime) throws IOException {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(imageData));
+        BufferedImage mask = ImageIO.read(new ByteArrayInputStream(maskData));
+
+        long start = System.nanoTime();
+        BufferedImage result = AutoTuner.withProfile(profile, () -> Main.applyFilter(image, mask, filter));
+        if (filterTime != null) {
+            filterTime[0] += System.nanoTime() - start;
+        }
+        return encode(result);
+    }
+
+    /**
+     * Kodiert ein Bild wie Main als BMP.
+     */
+    private static byte[] encode(BufferedImage image) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(54 + 3 * image.getWidth() * image.getHeight());
+        if (!ImageIO.write(image, "bmp", output)) {
+            throw new IOException("No BMP writer available for image type " + image.getType());
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Liefert das Perzentil einer sortierten Messreihe nach dem Nearest-Rank-Verfahren.
+     */
+    private static long percentile(long[] sorted, int percent) {
+        int rank = (int) Math.ceil(percent / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    /**
+     * Liefert die bisherige Gesamtzeit aller Garbage Collectors in Millisekunden.
+     */
+    private static long collectionTime() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+            time += Math.max(0, collector.getCollectionTime());
+        }
+        return time;
+    }
+
+    /**
+     * Erzeugt ein Testbild aus Farbverläufen mit Rauschen.
+     */
+    private static BufferedImage createImage(int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = (int) ((long) x * 255 / width);
+                int green = (int) ((long) y * 255 / height);
+                int blue = random.nextInt(64) + ((x / 32 + y / 32) % 2 == 0 ? 0 : 192);
+                row[x] = (red << 16) | (green << 8) | blue;
+            }
+            image.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return image;
+    }
+
+    /**
+     * Erzeugt eine Maske, in der der angegebene Anteil der Pixel weiß ist.
+     */
+    private static BufferedImage createMask(int width, int height, double density, Random random) {
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                row[x] = random.nextDouble() < density ? 0xFFFFFF : 0x000000;
+            }
+            mask.setRGB(0, y, width, 1, row, 0, width);
+        }
+        return mask;
+    }
+
+    private static double[] parseDoubles(String value) {
+        return Arrays.stream(value.split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+    }
+
+    /**
+     * Liest die Prüfsummen aus einem früheren CSV-Bericht.
+     */
+    private static Map<String, String> readChecksums(Path file) throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        if (lines.isEmpty()) {
+            throw new IOException("Reference report " + file + " is empty.");
+        }
+        List<String> header = Arrays.asList(lines.get(0).split(";"));
+        int filter = header.indexOf("filter");
+        int width = header.indexOf("width");
+        int height = header.indexOf("height");
+        int density = header.indexOf("maskDensity");
+        int checksum = header.indexOf("checksum");
+        if (filter < 0 || width < 0 || height < 0 || density < 0 || checksum < 0) {
+            throw new IOException("Reference report " + file + " has no checksum columns.");
+        }
+
+        Map<String, String> checksums = new HashMap<>();
+        for (String line : lines.subList(1, lines.size())) {
+            String[] values = line.split(";");
+            if (values.length == header.size()) {
+                checksums.put(key(values[filter], values[width], values[height], values[density]), values[checksum]);
+            }
+        }
+        return checksums;
+    }
+
+    private static String key(String filter, String width, String height, String density) {
+        return filter + ";" + width + ";" + height + ";" + density;
+    }
+
+    private static void writeCsv(Path file, List<Result> results) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write(String.join(";", COLUMNS));
+            writer.write(System.lineSeparator());
+            for (Result result : results) {
+                writer.write(String.join(";", result.values()));
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    private void writeJson(Path file, List<Result> results) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write("  \"seed\": " + seed + ",\n");
+            writer.write("  \"processors\": " + Runtime.getRuntime().availableProcessors() + ",\n");
+            writer.write("  \"maxHeapBytes\": " + Runtime.getRuntime().maxMemory() + ",\n");
+            writer.write("  \"javaVersion\": \"" + System.getProperty("java.version") + "\",\n");
+            writer.write("  \"results\": [");
+            for (int i = 0; i < results.size(); i++) {
+                String[] values = results.get(i).values();
+                writer.write(i == 0 ? "\n    {" : ",\n    {");
+                for (int column = 0; column < COLUMNS.length; column++) {
+                    boolean text = column == 0 || COLUMNS[column].equals("checksum") || COLUMNS[column].equals("status");
+                    writer.write((column == 0 ? "" : ", ") + "\"" + COLUMNS[column] + "\": ");
+                    writer.write(text ? "\"" + values[column] + "\"" : values[column]);
+                }
+                writer.write("}");
+            }
+            writer.write("\n  ]\n}\n");
+        }
+    }
+
+    /**
+     * Das Ergebnis einer Messung für eine Kombination aus Filter, Bild, Maske und Thread-Anzahl.
+     */
+    private static final class Result {
+        private final String filter;
+        private final int threads;
+        private int width;
+        private int height;
+        private double density;
+        private int iterations;
+        private double throughput;
+        private double p50;
+        private double p95;
+        private double p99;
+        private double filterMillis;
+        private double peakHeapMegabytes;
+        private long gcMillis;
+        private String checksum;
+        private boolean stable = true;
+        private String status;
+
+        Result(String filter, int threads) {
+            this.filter = filter;
+            this.threads = threads;
+        }
+
+        String key() {
+            return Benchmark.key(filter, String.valueOf(width), String.valueOf(height), format(density));
+        }
+
+        String[] values() {
+            return new String[] { filter, String.valueOf(width), String.valueOf(height),
+                    format(width * (double) height / 1e6), format(density), String.valueOf(threads),
+                    String.valueOf(iterations), format(throughput), format(p50), format(p95), format(p99),
+                    format(filterMillis), format(peakHeapMegabytes), String.valueOf(gcMillis), checksum, status };
+        }
+
+        private static String format(double value) {
+            return String.format(Locale.ROOT, "%.3f", value);
+        }
+    }
+}
\ No newline at end of file
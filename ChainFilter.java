@@ -1,11 +1,34 @@
 package filters;
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * Der ChainFilter wendet mehrere Filter nacheinander an, zum Beispiel PixelFilter, BlurFilter oder
+ * PixelGraphicFilter. Die Maske wird an jede Stufe weitergegeben. Vor der ersten Ausführung wird die Kette vom
+ * {@link ChainPlanner} in eine gleichwertige, günstigere Kette umgeformt; {@link #explain()} zeigt das Ergebnis.
+ * <p>
+ * Ohne Pipeline laufen die Stufen nacheinander, und jede Stufe verteilt ihr Bild selbst auf die Threads ihres
+ * Ausführungsprofils. Hat die Kette mindestens so viele Stufen wie das Profil Threads erlaubt und können alle Stufen
+ * Ausschnitte berechnen, läuft sie stattdessen als Streifen-Pipeline: Jede Stufe arbeitet in einem eigenen Thread
+ * Streifen für Streifen und gibt ihre Ergebnisse über einen beschränkten Puffer an die nächste Stufe weiter. Während
+ * Stufe N den Streifen k berechnet, bearbeitet Stufe N+1 bereits den Streifen k-1. Jede Stufe hält dabei nur die
+ * Zeilen, die sie für ihre nächsten Streifen benötigt, statt eines ganzen Zwischenbilds.
+ */
 public class ChainFilter implements Filter {
-	private List<PixelFilter> filters;
+    /** Die Anzahl der Streifen, die zwischen zwei Stufen der Pipeline höchstens warten. */
+    private static final int PIPELINE_DEPTH = 2;
+    /** Markiert in der Pipeline das Ende der Streifen einer Stufe. */
+    private static final int[] END_OF_STREAM = new int[0];
+
+	private List<Filter> filters;
+    private ChainPlanner.Plan plan;
 
     /**
      * Konstruiert einen ChainFilter mit der angegebenen maximalen Anzahl von Filtern.
@@ -17,29 +40,591 @@ public class ChainFilter implements Filter {
     }
 
     /**
-     * Fügt einen PixelFilter zur Kette hinzu.
+     * Fügt einen Filter zur Kette hinzu.
      *
      * @param filter der hinzuzufügende Filter
      */
-    public void add(PixelFilter filter) {
+    public void add(Filter filter) {
     	filters.add(filter);
+        plan = null;
+    }
+
+    /**
+     * Liefert die Stufen des umgeformten Plans, der tatsächlich ausgeführt wird.
+     *
+     * @return die geplanten Stufen in Ausführungsreihenfolge
+     */
+    List<Filter> getPlannedFilters() {
+        return Collections.unmodifiableList(getPlan().getStages());
+    }
+
+    /**
+     * Liefert den Plan der Kette und erstellt ihn bei Bedarf.
+     *
+     * @return der aktuelle Plan
+     */
+    private synchronized ChainPlanner.Plan getPlan() {
+        if (plan == null) {
+            plan = ChainPlanner.plan(new ArrayList<>(filters));
+        }
+        return plan;
+    }
+
+    /**
+     * Beschreibt die ursprüngliche Kette, den umgeformten Plan und die angewendeten Umformungen.
+     *
+     * @return die Beschreibung als mehrzeiliger Text
+     */
+    public String explain() {
+        ChainPlanner.Plan currentPlan = getPlan();
+        StringBuilder explanation = new StringBuilder("Kette:");
+        for (Filter filter : filters) {
+            explanation.append(System.lineSeparator()).append("  ").append(filter);
+        }
+        explanation.append(System.lineSeparator()).append("Plan:");
+        int step = 1;
+        for (Filter stage : currentPlan.getStages()) {
+            explanation.append(System.lineSeparator()).append("  ").append(step++).append(". ").append(stage);
+        }
+        if (currentPlan.getStages().isEmpty()) {
+            explanation.append(System.lineSeparator()).append("  (keine Stufen, das Ergebnis ist eine Kopie des Eingangsbilds)");
+        }
+        explanation.append(System.lineSeparator()).append("Umformungen:");
+        for (String rewrite : currentPlan.getRewrites()) {
+            explanation.append(System.lineSeparator()).append("  - ").append(rewrite);
+        }
+        if (currentPlan.getRewrites().isEmpty()) {
+            explanation.append(System.lineSeparator()).append("  (keine)");
+        }
+        return explanation.toString();
+    }
+
+    /**
+     * Prüft, ob der umgeformte Plan auf den gegebenen Bildern dasselbe Ergebnis liefert wie die ursprüngliche Kette.
+     * Beide werden wie in {@link #process(BufferedImage...)} mit derselben Maske ausgeführt.
+     *
+     * @param images die Testbilder, mindestens eines
+     * @param mask   die Maske oder null; Filter, die eine Maske verwenden, benötigen sie
+     * @return true, wenn alle Ergebnisse pixelgenau übereinstimmen
+     * @throws IllegalArgumentException wenn keine Testbilder übergeben werden
+     */
+    public boolean verifyPlan(List<BufferedImage> images, BufferedImage mask) {
+        if (images.isEmpty()) {
+            throw new IllegalArgumentException("No test images provided.");
+        }
+        ImageStatistics.Cache statistics = new ImageStatistics.Cache();
+        for (BufferedImage image : images) {
+            BufferedImage expected = run(filters, image, mask, statistics);
+            BufferedImage actual = run(getPlan().getStages(), image, mask, statistics);
+            int width = expected.getWidth();
+            int height = expected.getHeight();
+            if (actual.getWidth() != width || actual.getHeight() != height) {
+                return false;
+            }
+            int[] expectedPixels = expected.getRGB(0, 0, width, height, null, 0, width);
+            int[] actualPixels = actual.getRGB(0, 0, width, height, null, 0, width);
+            for (int i = 0; i < expectedPixels.length; i++) {
+                if ((expectedPixels[i] & 0x00FFFFFF) != (actualPixels[i] & 0x00FFFFFF)) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     /**
      * Wendet die Kette von Filtern auf die Eingangsbilder an.
      *
-     * @param images die zu verarbeitenden Eingangsbilder
+     * @param images die zu verarbeitenden Eingangsbilder; das zweite Bild ist die optionale Maske
      * @return das resultierende verarbeitete Bild
      */
     public BufferedImage process(BufferedImage... images) {
+        return process(new ImageStatistics.Cache(), images);
+    }
+
+    /**
+     * Wendet die Kette von Filtern auf die Eingangsbilder an. Bildabhängige Stufen wie ein adaptiver ThresholdFilter
+     * entnehmen die Statistik ihres Eingangsbilds dem Zwischenspeicher, sodass mehrere Filter eines Durchlaufs die
+     * Statistik des gemeinsamen Eingangsbilds nur einmal berechnen.
+     *
+     * @param statistics der Zwischenspeicher für die Bildstatistik dieses Durchlaufs
+     * @param images     die zu verarbeitenden Eingangsbilder; das zweite Bild ist die optionale Maske
+     * @return das resultierende verarbeitete Bild
+     */
+    public BufferedImage process(ImageStatistics.Cache statistics, BufferedImage... images) {
     	if (images.length == 0) {
             throw new IllegalArgumentException("No input images provided.");
         }
 
-        BufferedImage result = images[0];
-        for (PixelFilter filter : filters) {
-            result = filter.process(result);
+        BufferedImage image = images[0];
+        BufferedImage mask = images.length > 1 ? images[1] : null;
+        List<Filter> stages = getPlan().getStages();
+        ExecutionProfile profile = profileFor(stages, image.getWidth(), image.getHeight());
+        if (usesPipeline(stages, profile)) {
+            return runPipelined(stages, image, mask, profile.getTileHeight());
+        }
+        return run(stages, image, mask, statistics);
+    }
+
+    /**
+     * Leitet das Ausführungsprofil der Kette aus den Profilen ihrer Stufen ab, da die Ketten sich je nach Stufen
+     * unterscheiden und deshalb kein gemeinsames Profil für ChainFilter kalibriert wird. Lohnen sich für eine Stufe
+     * mehrere Threads, darf auch die Pipeline mehrere verwenden; die Streifen sind so hoch wie für die Stufe mit den
+     * höchsten Streifen.
+     *
+     * @param stages die Stufen des Plans
+     * @param width  die Bildbreite
+     * @param height die Bildhöhe
+     * @return das Ausführungsprofil der Kette
+     */
+    private static ExecutionProfile profileFor(List<Filter> stages, int width, int height) {
+        if (stages.isEmpty()) {
+            return ExecutionProfile.DEFAULT;
+        }
+        int threads = 1;
+        int tileHeight = 1;
+        for (Filter stage : stages) {
+            ExecutionProfile stageProfile = AutoTuner.profileFor(stage.getClass(), width, height);
+            threads = Math.max(threads, stageProfile.getThreads());
+            tileHeight = Math.max(tileHeight, stageProfile.getTileHeight());
+        }
+        return new ExecutionProfile(threads, tileHeight, ExecutionProfile.Backend.SCALAR);
+    }
+
+    /**
+     * Gibt an, ob die Stufen als Streifen-Pipeline ausgeführt werden. Die Pipeline beschäftigt genau einen Thread je
+     * Stufe, während nacheinander ausgeführte Stufen jeweils alle Threads des Profils nutzen. Sie lohnt sich daher nur,
+     * wenn die Kette mindestens so viele Stufen wie das Profil Threads hat, und setzt voraus, dass jede Stufe
+     * Ausschnitte berechnen kann.
+     *
+     * @param stages  die Stufen des Plans
+     * @param profile das Ausführungsprofil der Kette
+     * @return true, wenn die Pipeline verwendet wird
+     */
+    private static boolean usesPipeline(List<Filter> stages, ExecutionProfile profile) {
+        if (profile.getThreads() < 2 || stages.size() < profile.getThreads()) {
+            return false;
+        }
+        for (Filter stage : stages) {
+            if (!Regions.supports(stage)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wendet die gegebenen Stufen nacheinander auf das ganze Bild an. Ohne Stufen wird wie bei jedem anderen Filter
+     * ein neues TYPE_INT_RGB-Bild geliefert, hier eine Kopie des Eingangsbilds.
+     *
+     * @param stages     die Stufen
+     * @param image      das Eingangsbild
+     * @param mask       die Maske für jede Stufe oder null
+     * @param statistics der Zwischenspeicher für die Statistik der Eingangsbilder bildabhängiger Stufen
+     * @return das Ergebnis der letzten Stufe
+     */
+    private static BufferedImage run(List<Filter> stages, BufferedImage image, BufferedImage mask,
+            ImageStatistics.Cache statistics) {
+        if (stages.isEmpty()) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            BufferedImage copy = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            copy.setRGB(0, 0, width, height, image.getRGB(0, 0, width, height, null, 0, width), 0, width);
+            return copy;
+        }
+        BufferedImage result = image;
+        for (Filter filter : stages) {
+            BufferedImage[] images = (mask != null)
+                    ? new BufferedImage[] { result, mask }
+                    : new BufferedImage[] { result };
+            if (filter instanceof ChainFilter) {
+                result = ((ChainFilter) filter).process(statistics, images);
+            } else if (Regions.dependsOnImage(filter)) {
+                result = Regions.resolve(filter, result, mask, statistics).process(images);
+            } else {
+                result = filter.process(images);
+            }
         }
         return result;
     }
+
+    /**
+     * Ersetzt die bildabhängigen Stufen durch die festen Filter, die sie beim Anwenden der Kette auf das ganze Bild
+     * verwenden würden. Dazu werden die vorherigen Stufen einmal auf das ganze Bild angewendet, damit die Statistik
+     * vom vollständigen Eingangsbild der Stufe stammt.
+     *
+     * @param image      das ganze Eingangsbild
+     * @param mask       die Maske oder null
+     * @param statistics der Zwischenspeicher für die Bildstatistik dieses Durchlaufs
+     * @return die aufgelöste Kette, oder diese Kette, wenn keine Stufe vom Bild abhängt
+     */
+    ChainFilter resolve(BufferedImage image, BufferedImage mask, ImageStatistics.Cache statistics) {
+        if (!Regions.dependsOnImage(this)) {
+            return this;
+        }
+        List<Filter> stages = getPlan().getStages();
+        ChainFilter resolved = new ChainFilter(stages.size());
+        BufferedImage current = image;
+        List<Filter> pending = new ArrayList<>();
+        for (Filter stage : stages) {
+            Filter resolvedStage = stage;
+            if (Regions.dependsOnImage(stage)) {
+                if (!pending.isEmpty()) {
+                    current = run(pending, current, mask, statistics);
+                    pending.clear();
+                }
+                resolvedStage = Regions.resolve(stage, current, mask, statistics);
+            }
+            pending.add(resolvedStage);
+            resolved.add(resolvedStage);
+        }
+        return resolved;
+    }
+
+    /**
+     * Wendet die Stufen als Streifen-Pipeline an. Jede Stufe läuft in einem eigenen Thread; die letzte Stufe schreibt
+     * ihre Streifen direkt in das Ergebnisbild. Die Maske wird einmal gelesen und von allen Stufen geteilt.
+     *
+     * @param stages      die Stufen, die alle Ausschnitte berechnen können
+     * @param image       das Eingangsbild
+     * @param mask        die Maske für jede Stufe oder null
+     * @param stripHeight die gewünschte Höhe eines Streifens
+     * @return das Ergebnis der letzten Stufe
+     */
+    private static BufferedImage runPipelined(List<Filter> stages, BufferedImage image, BufferedImage mask,
+            int stripHeight) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int alignedHeight = alignStripHeight(stages, stripHeight, height);
+        int[] maskPixels = (mask != null) ? mask.getRGB(0, 0, width, height, null, 0, width) : null;
+        BufferedImage resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        PipelineState state = new PipelineState();
+
+        List<Runnable> workers = new ArrayList<>();
+        BlockingQueue<int[]> input = null;
+        for (int i = 0; i < stages.size(); i++) {
+            BlockingQueue<int[]> output = (i < stages.size() - 1) ? new ArrayBlockingQueue<>(PIPELINE_DEPTH) : null;
+            workers.add(new StripStage(stages.get(i), image, maskPixels, input, output, resultImage, alignedHeight,
+                    state));
+            input = output;
+        }
+        Parallel.runConcurrently(workers);
+
+        Throwable error = state.failure.get();
+        if (error instanceof InterruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the filter pipeline.", error);
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new IllegalStateException(error);
+        }
+        return resultImage;
+    }
+
+    /**
+     * Rundet die Streifenhöhe auf ein Vielfaches der Blockgrößen aller blockweisen Stufen auf. So liegt jeder Block
+     * vollständig in einem Streifen und wird nicht für zwei Streifen berechnet.
+     *
+     * @param stages      die Stufen
+     * @param stripHeight die gewünschte Streifenhöhe
+     * @param height      die Bildhöhe
+     * @return die ausgerichtete Streifenhöhe, höchstens die Bildhöhe
+     */
+    private static int alignStripHeight(List<Filter> stages, int stripHeight, int height) {
+        long alignment = blockAlignment(stages, height);
+        long aligned = ((stripHeight + alignment - 1) / alignment) * alignment;
+        return (int) Math.max(1, Math.min(height, aligned));
+    }
+
+    /**
+     * Liefert das kleinste gemeinsame Vielfache der Blockgrößen der blockweisen Stufen, höchstens die Bildhöhe.
+     */
+    private static long blockAlignment(List<Filter> stages, int height) {
+        long alignment = 1;
+        for (Filter stage : stages) {
+            long blockSize = 1;
+            if (stage instanceof ChainFilter) {
+                blockSize = blockAlignment(((ChainFilter) stage).getPlannedFilters(), height);
+            } else if (stage instanceof AreaFilter && ((AreaFilter) stage).isBlockwise()) {
+                blockSize = ((AreaFilter) stage).blockSize;
+            }
+            long a = alignment;
+            long b = blockSize;
+            while (b != 0) {
+                long remainder = a % b;
+                a = b;
+                b = remainder;
+            }
+            alignment = Math.min(height, alignment / a * blockSize);
+        }
+        return alignment;
+    }
+
+    /**
+     * Liefert die Anzahl der Zeilen, die das Fenster einer Stufe höchstens hält: den größten Eingangsausschnitt eines
+     * Streifens und einen weiteren Streifen, der gerade angehängt wird.
+     *
+     * @param filter      die Stufe
+     * @param stripHeight die Streifenhöhe
+     * @param width       die Bildbreite
+     * @param height      die Bildhöhe
+     * @return die Fenstergröße in Zeilen
+     */
+    private static int windowRows(Filter filter, int stripHeight, int width, int height) {
+        int requiredRows = 0;
+        for (int fromY = 0; fromY < height; fromY += stripHeight) {
+            Rectangle strip = new Rectangle(0, fromY, width, Math.min(stripHeight, height - fromY));
+            requiredRows = Math.max(requiredRows, Regions.requiredRegion(filter, strip, width, height).height);
+        }
+        return requiredRows + stripHeight;
+    }
+
+    /**
+     * Liefert den Eingangsausschnitt, den die Kette für einen Ausgabeausschnitt benötigt.
+     *
+     * @param region der Ausgabeausschnitt
+     * @param width  die Breite des Gesamtbilds
+     * @param height die Höhe des Gesamtbilds
+     * @return der benötigte Eingangsausschnitt
+     */
+    Rectangle requiredRegion(Rectangle region, int width, int height) {
+        List<Filter> stages = getPlan().getStages();
+        Rectangle required = region;
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            required = Regions.requiredRegion(stages.get(i), required, width, height);
+        }
+        return required;
+    }
+
+    /**
+     * Berechnet einen Ausgabeausschnitt, indem jede Stufe nur den Ausschnitt berechnet, den ihre Nachfolger benötigen.
+     *
+     * @param source       die Pixel des Eingangsausschnitts
+     * @param mask         die Maskenpixel mit derselben Geometrie wie source oder null; jede Stufe erhält den
+     *                     passenden Teil
+     * @param sourceRegion der Eingangsausschnitt
+     * @param result       das Array für die Pixel des Ausgabeausschnitts
+     * @param resultRegion der Ausgabeausschnitt
+     * @param width        die Breite des Gesamtbilds
+     * @param height       die Höhe des Gesamtbilds
+     */
+    void processRegion(int[] source, int[] mask, Rectangle sourceRegion, int[] result, Rectangle resultRegion,
+            int width, int height) {
+        List<Filter> stages = getPlan().getStages();
+        Rectangle[] regions = new Rectangle[stages.size() + 1];
+        regions[stages.size()] = resultRegion;
+        for (int i = stages.size() - 1; i >= 0; i--) {
+            regions[i] = Regions.requiredRegion(stages.get(i), regions[i + 1], width, height);
+        }
+
+        int[] current = Regions.crop(source, sourceRegion, regions[0]);
+        for (int i = 0; i < stages.size(); i++) {
+            int[] stageMask = (mask != null) ? Regions.crop(mask, sourceRegion, regions[i]) : null;
+            int[] next = new int[regions[i + 1].width * regions[i + 1].height];
+            Regions.process(stages.get(i), current, stageMask, regions[i], next, regions[i + 1], width, height);
+            current = next;
+        }
+        System.arraycopy(current, 0, result, 0, result.length);
+    }
+
+    /**
+     * Schätzt den Speicherbedarf der Kette. Laufen die Stufen nacheinander, ist während einer Stufe zusätzlich das
+     * Ergebnisbild der vorherigen Stufe belegt. In der Pipeline hält jede Stufe nur ihr Zeilenfenster und die
+     * wartenden Streifen; hinzu kommt das Ergebnisbild.
+     *
+     * @param width    die Bildbreite
+     * @param height   die Bildhöhe
+     * @param withMask gibt an, ob eine Maske übergeben wird
+     * @return der geschätzte Spitzenbedarf in Bytes
+     */
+    long estimatePeakBytes(int width, int height, boolean withMask) {
+        long imageBytes = 4L * width * height;
+        List<Filter> stages = getPlan().getStages();
+        ExecutionProfile profile = profileFor(stages, width, height);
+
+        if (usesPipeline(stages, profile)) {
+            int stripHeight = alignStripHeight(stages, profile.getTileHeight(), height);
+            // Das Ergebnisbild und die gemeinsam gelesene Maske
+            long peak = withMask ? 2 * imageBytes : imageBytes;
+            for (Filter stage : stages) {
+                // Zeilenfenster mit Maske, ein Hilfspuffer der Fenstergröße und die wartenden Streifen
+                long windowRows = windowRows(stage, stripHeight, width, height);
+                long rows = windowRows * (withMask ? 3 : 2) + (long) stripHeight * (PIPELINE_DEPTH + 1);
+                peak += 4L * width * rows;
+            }
+            return peak;
+        }
+
+        long peak = 0;
+        for (int i = 0; i < stages.size(); i++) {
+            long stagePeak = FilterScheduler.estimateFilterBytes(stages.get(i), width, height, withMask);
+            peak = Math.max(peak, i > 0 ? stagePeak + imageBytes : stagePeak);
+        }
+        return peak;
+    }
+
+    /**
+     * Der gemeinsame Zustand der Stufen einer Pipeline. Schlägt eine Stufe fehl, werden die übrigen unterbrochen,
+     * sodass keine Stufe auf Streifen wartet, die nicht mehr kommen.
+     */
+    private static final class PipelineState {
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final List<Thread> running = new ArrayList<>();
+
+        synchronized void register(Thread thread) {
+            running.add(thread);
+        }
+
+        synchronized void unregister(Thread thread) {
+            running.remove(thread);
+        }
+
+        boolean isFailed() {
+            return failure.get() != null;
+        }
+
+        /**
+         * Merkt sich den ersten Fehler und unterbricht alle anderen laufenden Stufen.
+         */
+        void fail(Throwable error) {
+            if (failure.compareAndSet(null, error)) {
+                synchronized (this) {
+                    for (Thread thread : running) {
+                        if (thread != Thread.currentThread()) {
+                            thread.interrupt();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Eine Stufe der Streifen-Pipeline. Sie liest ihre Eingangszeilen vom Eingangsbild oder von der vorherigen
+     * Stufe, hält davon nur das Fenster, das sie für ihren nächsten Streifen benötigt, und gibt jeden berechneten
+     * Streifen an die nächste Stufe oder in das Ergebnisbild weiter. Das Fenster liegt in einem festen Puffer; beim
+     * Weiterschieben werden nur die Zeilen an den Anfang kopiert, die auch der nächste Streifen noch benötigt.
+     */
+    private static final class StripStage implements Runnable {
+        private final Filter filter;
+        private final BufferedImage image;
+        private final int[] maskPixels;
+        private final BlockingQueue<int[]> input;
+        private final BlockingQueue<int[]> output;
+        private final BufferedImage resultImage;
+        private final int stripHeight;
+        private final PipelineState state;
+        private final int width;
+        private final int height;
+
+        private final int[] window;
+        private final int[] windowMask;
+        private int windowStart;
+        private int windowEnd;
+
+        StripStage(Filter filter, BufferedImage image, int[] maskPixels, BlockingQueue<int[]> input,
+                BlockingQueue<int[]> output, BufferedImage resultImage, int stripHeight, PipelineState state) {
+            this.filter = filter;
+            this.image = image;
+            this.maskPixels = maskPixels;
+            this.input = input;
+            this.output = output;
+            this.resultImage = resultImage;
+            this.stripHeight = stripHeight;
+            this.state = state;
+            this.width = image.getWidth();
+            this.height = image.getHeight();
+            int capacity = windowRows(filter, stripHeight, width, height) * width;
+            this.window = new int[capacity];
+            this.windowMask = (maskPixels != null) ? new int[capacity] : null;
+        }
+
+        @Override
+        public void run() {
+            Thread thread = Thread.currentThread();
+            state.register(thread);
+            try {
+                for (int fromY = 0; fromY < height && !state.isFailed(); fromY += stripHeight) {
+                    Rectangle strip = new Rectangle(0, fromY, width, Math.min(stripHeight, height - fromY));
+                    Rectangle required = Regions.requiredRegion(filter, strip, width, height);
+                    discardRowsBefore(Math.min(required.y, windowEnd));
+                    while (windowEnd < required.y + required.height) {
+                        if (!appendRows()) {
+                            return;
+                        }
+                        discardRowsBefore(Math.min(required.y, windowEnd));
+                    }
+
+                    int[] result = new int[strip.width * strip.height];
+                    Rectangle windowRegion = new Rectangle(0, windowStart, width, windowEnd - windowStart);
+                    Regions.process(filter, window, windowMask, windowRegion, result, strip, width, height);
+                    if (output != null) {
+                        output.put(result);
+                    } else {
+                        resultImage.setRGB(0, fromY, width, strip.height, result, 0, width);
+                    }
+                }
+                if (output != null && !state.isFailed()) {
+                    // Die nächste Stufe hat alle Streifen abgeholt, daher ist Platz für die Endmarke
+                    output.offer(END_OF_STREAM);
+                }
+            } catch (Throwable e) {
+                // Eine Unterbrechung nach einem Fehler einer anderen Stufe ändert den gemerkten Fehler nicht
+                state.fail(e);
+            } finally {
+                state.unregister(thread);
+                if (state.isFailed()) {
+                    // Eine Unterbrechung durch die Pipeline darf nicht am Thread haften bleiben
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        /**
+         * Hängt die nächsten Eingangszeilen mit den passenden Maskenzeilen an das Fenster an. Liefert false, wenn die
+         * vorherige Stufe keine Streifen mehr liefert.
+         */
+        private boolean appendRows() throws InterruptedException {
+            int offset = (windowEnd - windowStart) * width;
+            int rowCount;
+            if (input == null) {
+                rowCount = Math.min(stripHeight, height - windowEnd);
+                image.getRGB(0, windowEnd, width, rowCount, window, offset, width);
+            } else {
+                int[] rows = input.take();
+                if (rows == END_OF_STREAM) {
+                    return false;
+                }
+                rowCount = rows.length / width;
+                System.arraycopy(rows, 0, window, offset, rows.length);
+            }
+            if (windowMask != null) {
+                System.arraycopy(maskPixels, windowEnd * width, windowMask, offset, rowCount * width);
+            }
+            windowEnd += rowCount;
+            return true;
+        }
+
+        /**
+         * Entfernt alle Zeilen oberhalb von y aus dem Fenster.
+         */
+        private void discardRowsBefore(int y) {
+            if (y <= windowStart) {
+                return;
+            }
+            int offset = (y - windowStart) * width;
+            int length = (windowEnd - y) * width;
+            System.arraycopy(window, offset, window, 0, length);
+            if (windowMask != null) {
+                System.arraycopy(windowMask, offset, windowMask, 0, length);
+            }
+            windowStart = y;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,208 @@
+package filters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Der ChainPlanner formt die Stufen eines ChainFilter vor der Ausführung in eine gleichwertige, günstigere Kette um.
+ * <p>
+ * Grundlage ist eine Wertemengenanalyse: Liefert eine Stufe nur endlich viele Farben (z.B. ThresholdFilter oder
+ * MonochromeFilter), werden die folgenden PixelFilter auf genau diesen Farben ausgewertet. Ist eine Stufe auf allen
+ * erreichbaren Farben die Identität, entfällt sie; andernfalls wird sie mit ihrer Vorgängerstufe zu einer
+ * Nachschlagetabelle verschmolzen, sodass die Kette ein Bild weniger durchläuft. Zwei direkt aufeinanderfolgende
+ * PseudoNegativeImage heben sich auf. Die Umformungen setzen voraus, dass calculate nur vom Pixelwert abhängt und
+ * nicht von der Maske. Andere Filter wie AreaFilter oder ein adaptiver ThresholdFilter bleiben unverändert und
+ * trennen die Kette in Abschnitte, die getrennt umgeformt werden.
+ */
+final class ChainPlanner {
+
+    private ChainPlanner() {
+    }
+
+    /**
+     * Ein ausführbarer Plan mit den umgeformten Stufen und einer Beschreibung der Umformungen.
+     */
+    static final class Plan {
+        private final List<Filter> stages;
+        private final List<String> rewrites;
+
+        Plan(List<Filter> stages, List<String> rewrites) {
+            this.stages = stages;
+            this.rewrites = rewrites;
+        }
+
+        List<Filter> getStages() {
+            return stages;
+        }
+
+        List<String> getRewrites() {
+            return rewrites;
+        }
+    }
+
+    /**
+     * Erstellt den Plan für die gegebenen Stufen.
+     *
+     * @param filters die Stufen der Kette in Ausführungsreihenfolge
+     * @return der umgeformte Plan
+     */
+    static Plan plan(List<Filter> filters) {
+        List<Filter> stages = new ArrayList<>();
+        // Für jede geplante Stufe die Menge ihrer möglichen Ausgabefarben (sortiert), oder null wenn unbeschränkt
+        List<int[]> reachable = new ArrayList<>();
+        List<String> rewrites = new ArrayList<>();
+
+        for (Filter stage : filters) {
+            if (!(stage instanceof PixelFilter) || ((PixelFilter) stage).isImageDependent()) {
+                // Über andere Filter ist nichts bekannt; ihre Ausgabe ist unbeschränkt
+                stages.add(stage);
+                reachable.add(null);
+                continue;
+            }
+
+            PixelFilter filter = (PixelFilter) stage;
+            int[] input = stages.isEmpty() ? null : reachable.get(reachable.size() - 1);
+
+            if (input != null) {
+                int[] mapped = map(filter, input);
+                if (Arrays.equals(input, mapped)) {
+                    rewrites.add(filter + " entfällt: Identität auf den " + input.length + " erreichbaren Farben");
+                    continue;
+                }
+
+                // Nur PixelFilter haben eine beschränkte Wertemenge, die Vorgängerstufe ist also ein PixelFilter
+                PixelFilter previous = (PixelFilter) stages.remove(stages.size() - 1);
+                reachable.remove(reachable.size() - 1);
+                LookupFilter fused = LookupFilter.compose(previous, input, filter, mapped);
+                stages.add(fused);
+                reachable.add(distinct(mapped));
+                rewrites.add(previous + " und " + filter + " werden zu einer Nachschlagetabelle mit "
+                        + fused.size() + " Einträgen zusammengefasst");
+                continue;
+            }
+
+            if (filter.getClass() == PseudoNegativeImage.class && !stages.isEmpty()
+                    && stages.get(stages.size() - 1).getClass() == PseudoNegativeImage.class) {
+                stages.remove(stages.size() - 1);
+                reachable.remove(reachable.size() - 1);
+                rewrites.add("PseudoNegativeImage und PseudoNegativeImage heben sich auf");
+                continue;
+            }
+
+            stages.add(filter);
+            int[] colors = filter.outputColors();
+            reachable.add(colors != null ? distinct(colors) : null);
+        }
+        return new Plan(stages, rewrites);
+    }
+
+    /**
+     * Wertet einen Filter auf einer Menge von Farben aus. Da calculate nicht von der Maske abhängt, bleibt sie leer.
+     *
+     * @param filter der Filter
+     * @param colors die Eingangsfarben
+     * @return die Ausgabefarben in derselben Reihenfolge, mit vollem Alpha
+     */
+    private static int[] map(PixelFilter filter, int[] colors) {
+        int[] mapped = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            mapped[i] = 0xFF000000 | filter.calculate(colors[i], 0);
+        }
+        return mapped;
+    }
+
+    /**
+     * Liefert die sortierten, eindeutigen Farben eines Arrays mit vollem Alpha.
+     *
+     * @param colors die Farben
+     * @return die sortierte Menge der Farben
+     */
+    private static int[] distinct(int[] colors) {
+        int[] sorted = new int[colors.length];
+        for (int i = 0; i < colors.length; i++) {
+            sorted[i] = 0xFF000000 | colors[i];
+        }
+        return Arrays.stream(sorted).sorted().distinct().toArray();
+    }
+
+    /**
+     * Eine verschmolzene Stufe: Sie wendet die Basisstufe an und ersetzt deren Ergebnis über eine Tabelle durch das
+     * Ergebnis aller nachfolgenden, verschmolzenen Stufen.
+     */
+    static final class LookupFilter extends PixelFilter implements Filter {
+        private final PixelFilter base;
+        private final List<PixelFilter> followers;
+        private final int[] keys;
+        private final int[] values;
+
+        private LookupFilter(PixelFilter base, List<PixelFilter> followers, int[] keys, int[] values) {
+            this.base = base;
+            this.followers = followers;
+            this.keys = keys;
+            this.values = values;
+        }
+
+        /**
+         * Verschmilzt eine Stufe mit einem nachfolgenden Filter.
+         *
+         * @param previous die bisherige Stufe
+         * @param input    die sortierten Ausgabefarben der bisherigen Stufe
+         * @param filter   der nachfolgende Filter
+         * @param mapped   die Ausgabe des Filters für jede Farbe aus input
+         * @return die verschmolzene Stufe
+         */
+        static LookupFilter compose(PixelFilter previous, int[] input, PixelFilter filter, int[] mapped) {
+            if (previous instanceof LookupFilter) {
+                LookupFilter lookup = (LookupFilter) previous;
+                List<PixelFilter> followers = new ArrayList<>(lookup.followers);
+                followers.add(filter);
+                int[] values = new int[lookup.values.length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = mapped[Arrays.binarySearch(input, lookup.values[i])];
+                }
+                return new LookupFilter(lookup.base, followers, lookup.keys, values);
+            }
+            List<PixelFilter> followers = new ArrayList<>();
+            followers.add(filter);
+            return new LookupFilter(previous, followers, input, mapped);
+        }
+
+        /**
+         * Liefert die Anzahl der Einträge der Tabelle.
+         *
+         * @return die Anzahl der Einträge
+         */
+        int size() {
+            return keys.length;
+        }
+
+        @Override
+        protected int calculate(int pixelColor, int maskColor) {
+            int color = 0xFF000000 | base.calculate(pixelColor, maskColor);
+            int index = Arrays.binarySearch(keys, color);
+            if (index >= 0) {
+                return values[index];
+            }
+            // Nicht vorhergesehene Farbe: die verschmolzenen Stufen einzeln anwenden
+            for (PixelFilter follower : followers) {
+                color = 0xFF000000 | follower.calculate(color, 0);
+            }
+            return color;
+        }
+
+        @Override
+        int[] outputColors() {
+            return values.clone();
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder description = new StringBuilder("Nachschlagetabelle[").append(base);
+            for (PixelFilter follower : followers) {
+                description.append(" -> ").append(follower);
+            }
+            return description.append("; ").append(keys.length).append(" Einträge]").toString();
+        }
+    }
+}
\ No newline at end of file
@@ -1,7 +1,5 @@
 package filters;
 
-import java.awt.image.BufferedImage;
-
 /**
  * Ein Filter, der einen einzelnen Farbkanal aus einem Bild extrahiert.
  */
@@ -25,33 +23,6 @@ public class ColorBandFilter extends PixelFilter implements Filter {
         this.colorBand = colorBand;
     }
 
-    /**
-     * Wendet den Farbbandfilter auf das angegebene Bild an.
-     *
-     * @param images die Eingangsbilder, die gefiltert werden sollen
-     * @return das gefilterte Bild
-     */
-    @Override
-    public BufferedImage process(BufferedImage... images) {
-        BufferedImage image = images[0]; // Das erste Bild in der Liste abrufen
-
-        // Bildbearbeitung
-        int width = image.getWidth();
-        int height = image.getHeight();
-        BufferedImage resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int sourcePixel = image.getRGB(x, y);
-
-                int processedPixel = calculate(sourcePixel, 0); // Die Maske wird in diesem Filter nicht verwendet
-                resultImage.setRGB(x, y, processedPixel);
-            }
-        }
-
-        return resultImage;
-    }
-
     /**
      * Berechnet den neuen Farbwert basierend auf dem ausgewählten Farbkanal.
      *
@@ -82,4 +53,23 @@ public class ColorBandFilter extends PixelFilter implements Filter {
 
         return processedColor;
     }
+
+    /**
+     * Der Filter liefert nur die 256 Werte des gewählten Farbkanals.
+     *
+     * @return die möglichen Ausgabefarben
+     */
+    @Override
+    int[] outputColors() {
+        int[] colors = new int[256];
+        for (int value = 0; value < 256; value++) {
+            colors[value] = 0xFF000000 | calculate(value * 0x010101, 0);
+        }
+        return colors;
+    }
+
+    @Override
+    public String toString() {
+        return "ColorBandFilter[" + colorBand + "]";
+    }
 }
\ No newline at end of file
@@ -17,9 +17,20 @@ public class ColorReplacementFilter extends PixelFilter implements Filter {
      * @param grayLevels Die Graustufenwerte, für die Ersatzfarben generiert werden sollen.
      */
     public ColorReplacementFilter(int... grayLevels) {
+        this(new Random(), grayLevels);
+    }
+
+    /**
+     * Konstruktor, der die Ersatzfarben mit dem angegebenen Zufallsgenerator erzeugt.
+     * Mit einem Generator mit festem Startwert sind die Ersatzfarben und damit die Ergebnisse reproduzierbar.
+     *
+     * @param random     Der Zufallsgenerator für die Ersatzfarben.
+     * @param grayLevels Die Graustufenwerte, für die Ersatzfarben generiert werden sollen.
+     */
+    public ColorReplacementFilter(Random random, int... grayLevels) {
         replacementColors = new Color[256];
         for (int level : grayLevels) {
-            replacementColors[level] = generateRandomColor();
+            replacementColors[level] = generateRandomColor(random);
         }
     }
 
@@ -67,13 +78,27 @@ public class ColorReplacementFilter extends PixelFilter implements Filter {
     /**
      * Generiert eine zufällige Farbe.
      *
+     * @param random Der Zufallsgenerator.
      * @return Die generierte zufällige Farbe.
      */
-    private Color generateRandomColor() {
-        Random random = new Random();
+    private Color generateRandomColor(Random random) {
         int red = random.nextInt(256);
         int green = random.nextInt(256);
         int blue = random.nextInt(256);
         return new Color(red, green, blue);
     }
+
+    @Override
+    public String toString() {
+        StringBuilder levels = new StringBuilder();
+        for (int level = 0; level < replacementColors.length; level++) {
+            if (replacementColors[level] != null) {
+                if (levels.length() > 0) {
+                    levels.append(", ");
+                }
+                levels.append(level);
+            }
+        }
+        return "ColorReplacementFilter[" + levels + "]";
+    }
 }
\ No newline at end of file
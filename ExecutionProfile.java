@@ -0,0 +1,95 @@
+package filters;
+
+/**
+ * Ein ExecutionProfile legt fest, wie ein Filter ausgeführt wird: mit wie vielen Threads, in welcher Streifenhöhe
+ * das Bild aufgeteilt wird und welches Verfahren für die Pixelberechnung verwendet wird.
+ * Die passenden Werte je Filtertyp und Bildgröße ermittelt der {@link AutoTuner}.
+ */
+public final class ExecutionProfile {
+
+    /**
+     * Die Verfahren zur Pixelberechnung eines PixelFilter.
+     */
+    public enum Backend {
+        /** Jedes Pixel wird einzeln mit calculate berechnet. */
+        SCALAR,
+        /** Ergebnisse von calculate werden in einer kleinen Tabelle je Streifen zwischengespeichert. */
+        LUT
+    }
+
+    /**
+     * Das Profil ohne Kalibrierung: alle Prozessorkerne, Streifen zu 128 Zeilen, einzelne Pixelberechnung.
+     */
+    public static final ExecutionProfile DEFAULT =
+            new ExecutionProfile(Runtime.getRuntime().availableProcessors(), 128, Backend.SCALAR);
+
+    private final int threads;
+    private final int tileHeight;
+    private final Backend backend;
+
+    /**
+     * Erstellt ein Profil.
+     *
+     * @param threads    die Anzahl der Threads
+     * @param tileHeight die Höhe der Streifen in Zeilen
+     * @param backend    das Verfahren zur Pixelberechnung
+     */
+    public ExecutionProfile(int threads, int tileHeight, Backend backend) {
+        if (threads <= 0 || tileHeight <= 0) {
+            throw new IllegalArgumentException("Thread count and tile height must be positive.");
+        }
+        this.threads = threads;
+        this.tileHeight = tileHeight;
+        this.backend = backend;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    public Backend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Liest ein Profil aus seiner Textdarstellung, wie sie {@link #toString()} liefert.
+     *
+     * @param text die Textdarstellung, z.B. "threads=4;tileHeight=128;backend=LUT"
+     * @return das Profil
+     */
+    public static ExecutionProfile parse(String text) {
+        int threads = DEFAULT.threads;
+        int tileHeight = DEFAULT.tileHeight;
+        Backend backend = DEFAULT.backend;
+        for (String part : text.split(";")) {
+            String[] keyValue = part.split("=", 2);
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("Invalid execution profile: " + text);
+            }
+            String value = keyValue[1].trim();
+            switch (keyValue[0].trim()) {
+                case "threads":
+                    threads = Integer.parseInt(value);
+                    break;
+                case "tileHeight":
+                    tileHeight = Integer.parseInt(value);
+                    break;
+                case "backend":
+                    backend = Backend.valueOf(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Invalid execution profile: " + text);
+            }
+        }
+        return new ExecutionProfile(threads, tileHeight, backend);
+    }
+
+    @Override
+    public String toString() {
+        return "threads=" + threads + ";tileHeight=" + tileHeight + ";backend=" + backend;
+    }
+}
\ No newline at end of file
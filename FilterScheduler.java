@@ -0,0 +1,272 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Der FilterScheduler führt Filteraufträge nebenläufig aus, ohne ein festes Speicherbudget zu überschreiten.
+ * <p>
+ * Für jeden Auftrag wird der Spitzenbedarf aus der Bildgröße und dem Aufbau des Filters geschätzt (Eingangsbilder,
+ * Zwischenergebnisse der Stufen einer ChainFilter und Ergebnis). Ein Auftrag wird nur gestartet, solange die Summe
+ * der Schätzungen aller laufenden Aufträge im Budget bleibt und ein Arbeits-Thread frei ist. Wartende Aufträge
+ * werden streng in Eingangsreihenfolge gestartet, damit große Aufträge nicht von kleineren überholt werden.
+ * Wartet ein Auftrag länger als die Wartezeit, wird er mit einer TimeoutException beendet.
+ */
+public class FilterScheduler implements AutoCloseable {
+    private final long memoryBudget;
+    private final int threads;
+    private final long queueTimeoutMillis;
+
+    private final ExecutorService workers;
+    private final ScheduledExecutorService timer;
+    private final Deque<Job> queue = new ArrayDeque<>();
+
+    private long admittedBytes;
+    private int runningJobs;
+    private long completedJobs;
+    private long timedOutJobs;
+    private boolean closed;
+
+    /**
+     * Erstellt einen Scheduler.
+     *
+     * @param memoryBudget       das Speicherbudget in Bytes für alle gleichzeitig laufenden Aufträge
+     * @param threads            die maximale Anzahl gleichzeitig laufender Aufträge
+     * @param queueTimeoutMillis die maximale Wartezeit eines Auftrags in der Warteschlange in Millisekunden
+     */
+    public FilterScheduler(long memoryBudget, int threads, long queueTimeoutMillis) {
+        if (memoryBudget <= 0 || threads <= 0 || queueTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("Budget, thread count and timeout must be positive.");
+        }
+        this.memoryBudget = memoryBudget;
+        this.threads = threads;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+        this.workers = Executors.newFixedThreadPool(threads, daemonThreads("filter-scheduler-worker-"));
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("filter-scheduler-timer-"));
+    }
+
+    /**
+     * Schätzt den Spitzenspeicherbedarf eines Auftrags in Bytes, einschließlich der Eingangsbilder.
+     *
+     * @param filter   der Filter
+     * @param width    die Bildbreite
+     * @param height   die Bildhöhe
+     * @param withMask gibt an, ob eine Maske übergeben wird
+     * @return der geschätzte Spitzenbedarf in Bytes
+     */
+    public static long estimatePeakBytes(Filter filter, int width, int height, boolean withMask) {
+        long imageBytes = 4L * width * height;
+        long inputBytes = withMask ? 2 * imageBytes : imageBytes;
+        return inputBytes + estimateFilterBytes(filter, width, height, withMask);
+    }
+
+    /**
+     * Schätzt den Speicher, den ein Filter zusätzlich zu seinen Eingangsbildern belegt.
+     *
+     * @param filter   der Filter
+     * @param width    die Bildbreite
+     * @param height   die Bildhöhe
+     * @param withMask gibt an, ob eine Maske übergeben wird
+     * @return der geschätzte Spitzenbedarf in Bytes ohne die Eingangsbilder
+     */
+    static long estimateFilterBytes(Filter filter, int width, int height, boolean withMask) {
+        if (filter instanceof ChainFilter) {
+            return ((ChainFilter) filter).estimatePeakBytes(width, height, withMask);
+        } else if (filter instanceof AreaFilter) {
+            return ((AreaFilter) filter).estimatePeakBytes(width, height, withMask);
+        } else if (filter instanceof PixelFilter) {
+            return ((PixelFilter) filter).estimatePeakBytes(width, height, withMask);
+        }
+        // Unbekannter Filter: großzügig mit vier Bildpuffern rechnen
+        return 4 * 4L * width * height;
+    }
+
+    /**
+     * Reiht einen Auftrag ein.
+     *
+     * @param filter der anzuwendende Filter
+     * @param images das Quellbild und optional die Maske
+     * @return ein Future mit dem Ergebnis; es schlägt mit einer TimeoutException fehl, wenn der Auftrag zu lange
+     *         wartet, und mit einer IllegalArgumentException, wenn der Auftrag das Budget allein übersteigt
+     */
+    public CompletableFuture<BufferedImage> submit(Filter filter, BufferedImage... images) {
+        if (images.length == 0) {
+            throw new IllegalArgumentException("No input images provided.");
+        }
+        long bytes = estimatePeakBytes(filter, images[0].getWidth(), images[0].getHeight(), images.length > 1);
+        Job job = new Job(filter, images, bytes);
+        if (bytes > memoryBudget) {
+            job.future.completeExceptionally(new IllegalArgumentException(
+                    "Job needs about " + bytes + " bytes, which exceeds the memory budget of " + memoryBudget + " bytes."));
+            return job.future;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("Scheduler has been closed.");
+            }
+            queue.addLast(job);
+            job.timeout = timer.schedule(() -> expire(job), queueTimeoutMillis, TimeUnit.MILLISECONDS);
+            dispatch();
+        }
+        // Vom Aufrufer abgebrochene Aufträge verlassen die Warteschlange sofort
+        job.future.whenComplete((result, error) -> {
+            if (job.future.isCancelled()) {
+                synchronized (this) {
+                    if (queue.remove(job)) {
+                        job.timeout.cancel(false);
+                        dispatch();
+                    }
+                }
+            }
+        });
+        return job.future;
+    }
+
+    /**
+     * Liefert die Anzahl der wartenden Aufträge.
+     *
+     * @return die Länge der Warteschlange
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Liefert die Summe der geschätzten Speicherbedarfe aller laufenden Aufträge.
+     *
+     * @return die zugelassenen Bytes
+     */
+    public synchronized long getAdmittedBytes() {
+        return admittedBytes;
+    }
+
+    public synchronized int getRunningJobs() {
+        return runningJobs;
+    }
+
+    public synchronized long getCompletedJobs() {
+        return completedJobs;
+    }
+
+    public synchronized long getTimedOutJobs() {
+        return timedOutJobs;
+    }
+
+    public long getMemoryBudget() {
+        return memoryBudget;
+    }
+
+    /**
+     * Nimmt keine neuen Aufträge mehr an. Wartende Aufträge werden abgebrochen, laufende beendet.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            for (Job job : queue) {
+                job.timeout.cancel(false);
+                job.future.cancel(false);
+            }
+            queue.clear();
+        }
+        workers.shutdown();
+        timer.shutdownNow();
+    }
+
+    /**
+     * Startet wartende Aufträge in Eingangsreihenfolge, solange Budget und Threads reichen.
+     */
+    private synchronized void dispatch() {
+        while (!queue.isEmpty()) {
+            Job job = queue.peekFirst();
+            if (job.future.isDone()) {
+                queue.removeFirst();
+                continue;
+            }
+            if (runningJobs >= threads || admittedBytes + job.bytes > memoryBudget) {
+                return;
+            }
+            queue.removeFirst();
+            job.timeout.cancel(false);
+            admittedBytes += job.bytes;
+            runningJobs++;
+            workers.execute(() -> run(job));
+        }
+    }
+
+    /**
+     * Führt einen zugelassenen Auftrag aus. Das Budget wird freigegeben, bevor das Ergebnis gemeldet wird, damit
+     * Folgeaufträge des Aufrufers nicht auf den eigenen, bereits beendeten Auftrag warten.
+     */
+    private void run(Job job) {
+        BufferedImage result = null;
+        Throwable failure = null;
+        try {
+            result = job.filter.process(job.images);
+        } catch (Throwable e) {
+            failure = e;
+        } finally {
+            synchronized (this) {
+                admittedBytes -= job.bytes;
+                runningJobs--;
+                completedJobs++;
+                dispatch();
+            }
+        }
+        if (failure != null) {
+            job.future.completeExceptionally(failure);
+        } else {
+            job.future.complete(result);
+        }
+    }
+
+    /**
+     * Beendet einen Auftrag, der zu lange gewartet hat.
+     */
+    private synchronized void expire(Job job) {
+        if (queue.remove(job)) {
+            timedOutJobs++;
+            job.future.completeExceptionally(new TimeoutException(
+                    "Job waited longer than " + queueTimeoutMillis + " ms for memory."));
+            // Ein abgelaufener Auftrag an der Spitze kann nachfolgende Aufträge blockiert haben
+            dispatch();
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Ein Auftrag mit seinem geschätzten Speicherbedarf.
+     */
+    private static final class Job {
+        private final Filter filter;
+        private final BufferedImage[] images;
+        private final long bytes;
+        private final CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+        private ScheduledFuture<?> timeout;
+
+        Job(Filter filter, BufferedImage[] images, long bytes) {
+            this.filter = filter;
+            this.images = images;
+            this.bytes = bytes;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,314 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Der FrameStream wendet einen Filter auf eine geordnete Folge von Einzelbildern an, zum Beispiel auf Kamerabilder.
+ * Anders als bei wiederholten Aufrufen von Filter.process bleibt der Zustand zwischen den Bildern erhalten:
+ * die Puffer werden wiederverwendet, die Maske wird nur einmal dekodiert und der Filter wird nur einmal in
+ * Verarbeitungsstufen zerlegt. Stufen auf Basis von AreaFilter erkennen unveränderte Blöcke über einen Blockhash
+ * und übernehmen für diese das Ergebnis des vorherigen Bildes.
+ * <p>
+ * Die zurückgegebenen Bilder stammen aus einem Pool von zwei Puffern. Ein Ergebnis bleibt daher nur bis zum
+ * übernächsten Aufruf von {@link #next(BufferedImage)} gültig.
+ */
+public class FrameStream {
+    private static final int POOL_SIZE = 2;
+
+    private final Filter filter;
+    private final BufferedImage maskImage;
+
+    private int width = -1;
+    private int height = -1;
+    private int[] mask;
+    private int[] work;
+    private List<Stage> stages;
+    private BufferedImage[] outputPool;
+    private int nextOutput;
+
+    private long computedBlocks;
+    private long reusedBlocks;
+
+    /**
+     * Erstellt einen FrameStream ohne Maske.
+     *
+     * @param filter der Filter, der auf jedes Bild angewendet wird
+     */
+    public FrameStream(Filter filter) {
+        this(filter, null);
+    }
+
+    /**
+     * Erstellt einen FrameStream mit einer für alle Bilder gültigen Maske.
+     *
+     * @param filter    der Filter, der auf jedes Bild angewendet wird
+     * @param maskImage die Maske oder null, wenn keine Maske verwendet wird
+     */
+    public FrameStream(Filter filter, BufferedImage maskImage) {
+        this.filter = filter;
+        this.maskImage = maskImage;
+    }
+
+    /**
+     * Verarbeitet alle Bilder der Quelle in ihrer Reihenfolge und übergibt die Ergebnisse an den Empfänger.
+     *
+     * @param frames   die Bildquelle
+     * @param consumer der Empfänger der Ergebnisse
+     */
+    public void process(Iterable<BufferedImage> frames, Consumer<BufferedImage> consumer) {
+        for (BufferedImage frame : frames) {
+            consumer.accept(next(frame));
+        }
+    }
+
+    /**
+     * Verarbeitet das nächste Bild der Folge.
+     *
+     * @param frame das Eingangsbild
+     * @return das gefilterte Bild aus dem Ausgabepool
+     */
+    public BufferedImage next(BufferedImage frame) {
+        if (frame.getWidth() != width || frame.getHeight() != height) {
+            initialize(frame.getWidth(), frame.getHeight());
+        }
+
+        frame.getRGB(0, 0, width, height, work, 0, width);
+        int[] current = work;
+        for (Stage stage : stages) {
+            current = stage.run(current);
+        }
+
+        BufferedImage output = outputPool[nextOutput];
+        nextOutput = (nextOutput + 1) % POOL_SIZE;
+        output.setRGB(0, 0, width, height, current, 0, width);
+        return output;
+    }
+
+    /**
+     * Verwirft den gesamten Zustand. Das nächste Bild wird vollständig neu berechnet.
+     */
+    public void reset() {
+        width = -1;
+        height = -1;
+        stages = null;
+        mask = null;
+        work = null;
+        outputPool = null;
+    }
+
+    /**
+     * Liefert die Anzahl der Blöcke, die bisher neu berechnet wurden.
+     *
+     * @return die Anzahl der berechneten Blöcke
+     */
+    public long getComputedBlocks() {
+        return computedBlocks;
+    }
+
+    /**
+     * Liefert die Anzahl der Blöcke, deren Ergebnis aus dem vorherigen Bild übernommen wurde.
+     *
+     * @return die Anzahl der wiederverwendeten Blöcke
+     */
+    public long getReusedBlocks() {
+        return reusedBlocks;
+    }
+
+    /**
+     * Legt die Puffer für die neue Bildgröße an, dekodiert die Maske und zerlegt den Filter in Stufen.
+     *
+     * @param width  die Breite der Bilder
+     * @param height die Höhe der Bilder
+     */
+    private void initialize(int width, int height) {
+        this.width = width;
+        this.height = height;
+        mask = (maskImage != null) ? maskImage.getRGB(0, 0, width, height, null, 0, width) : null;
+        work = new int[width * height];
+        outputPool = new BufferedImage[POOL_SIZE];
+        for (int i = 0; i < POOL_SIZE; i++) {
+            outputPool[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        nextOutput = 0;
+
+        stages = new ArrayList<>();
+        if (filter instanceof ChainFilter) {
+            // ChainFilter gibt die Maske an jede seiner Stufen weiter
+            for (Filter stage : ((ChainFilter) filter).getPlannedFilters()) {
+                stages.add(createStage(stage, true));
+            }
+        } else {
+            stages.add(createStage(filter, true));
+        }
+    }
+
+    /**
+     * Erstellt die passende Verarbeitungsstufe für einen Filter.
+     *
+     * @param stageFilter der Filter der Stufe
+     * @param withMask    gibt an, ob die Stufe die Maske erhält
+     * @return die Verarbeitungsstufe
+     */
+    private Stage createStage(Filter stageFilter, boolean withMask) {
+        int[] stageMask = withMask ? mask : null;
+        if (stageFilter instanceof PixelFilter) {
+            PixelFilter pixelFilter = (PixelFilter) stageFilter;
+            return pixelFilter.isImageDependent()
+                    ? new AdaptivePixelStage(pixelFilter, stageMask)
+                    : new PixelStage(pixelFilter, stageMask);
+        }
+        if (stageFilter instanceof AreaFilter && ((AreaFilter) stageFilter).isBlockwise()) {
+            AreaFilter areaFilter = (AreaFilter) stageFilter;
+            if (areaFilter.useMask && stageMask == null) {
+                throw new IllegalArgumentException("No mask image provided.");
+            }
+            return new BlockStage(areaFilter, stageMask);
+        }
+        return new OpaqueStage(stageFilter, withMask ? maskImage : null);
+    }
+
+    /**
+     * Eine Verarbeitungsstufe des Streams. Sie liest ein Pixel-Array und liefert das Array mit ihrem Ergebnis.
+     */
+    private abstract static class Stage {
+        abstract int[] run(int[] input);
+    }
+
+    /**
+     * Wendet einen PixelFilter direkt auf dem Arbeitspuffer an.
+     */
+    private class PixelStage extends Stage {
+        private final PixelFilter pixelFilter;
+        private final int[] stageMask;
+
+        PixelStage(PixelFilter pixelFilter, int[] stageMask) {
+            this.pixelFilter = pixelFilter;
+            this.stageMask = stageMask;
+        }
+
+        @Override
+        int[] run(int[] input) {
+            pixelFilter.apply(input, stageMask, work, 0, work.length);
+            return work;
+        }
+    }
+
+    /**
+     * Wendet einen bildabhängigen PixelFilter wie einen adaptiven ThresholdFilter direkt auf dem Arbeitspuffer an.
+     * Die Statistik wird je Bild einmal aus dem Eingangspuffer der Stufe berechnet, ohne ihn erst in ein Bild zu
+     * kopieren; danach kostet die Stufe so viel wie ein fester Filter.
+     */
+    private class AdaptivePixelStage extends Stage {
+        private final PixelFilter pixelFilter;
+        private final int[] stageMask;
+
+        AdaptivePixelStage(PixelFilter pixelFilter, int[] stageMask) {
+            this.pixelFilter = pixelFilter;
+            this.stageMask = stageMask;
+        }
+
+        @Override
+        int[] run(int[] input) {
+            PixelFilter resolved = pixelFilter.resolve(ImageStatistics.compute(input, width, height));
+            resolved.apply(input, stageMask, work, 0, work.length);
+            return work;
+        }
+    }
+
+    /**
+     * Wendet einen AreaFilter blockweise an und berechnet nur die Blöcke neu, deren Blockhash sich gegenüber dem
+     * vorherigen Bild geändert hat. Da die Maske für den ganzen Stream feststeht, hängt das Ergebnis eines Blocks
+     * nur von seinen Eingangspixeln ab.
+     */
+    private class BlockStage extends Stage {
+        private final AreaFilter areaFilter;
+        private final int[] stageMask;
+        private final int blockCountX;
+        private final int blockCountY;
+        private final int[] output;
+        private final long[] blockHashes;
+        private final int[] pixels;
+        private final int[] maskPixels;
+        private boolean hasPrevious;
+
+        BlockStage(AreaFilter areaFilter, int[] stageMask) {
+            this.areaFilter = areaFilter;
+            this.stageMask = stageMask;
+            int blockSize = areaFilter.blockSize;
+            blockCountX = width / blockSize;
+            blockCountY = height / blockSize;
+            output = new int[width * height];
+            // Pixel außerhalb vollständiger Blöcke bleiben wie bei AreaFilter.process schwarz
+            Arrays.fill(output, 0xFF000000);
+            blockHashes = new long[blockCountX * blockCountY];
+            pixels = new int[blockSize * blockSize];
+            maskPixels = new int[blockSize * blockSize];
+        }
+
+        @Override
+        int[] run(int[] input) {
+            int blockSize = areaFilter.blockSize;
+            for (int blockY = 0; blockY < blockCountY; blockY++) {
+                for (int blockX = 0; blockX < blockCountX; blockX++) {
+                    int startX = blockX * blockSize;
+                    int startY = blockY * blockSize;
+                    int block = blockY * blockCountX + blockX;
+                    long hash = hashBlock(input, startX, startY, blockSize);
+
+                    if (hasPrevious && blockHashes[block] == hash) {
+                        reusedBlocks++;
+                    } else {
+                        blockHashes[block] = hash;
+                        areaFilter.processBlock(input, stageMask, output, width, startX, startY, pixels, maskPixels);
+                        computedBlocks++;
+                    }
+                }
+            }
+            hasPrevious = true;
+            return output;
+        }
+
+        /**
+         * Berechnet einen 64-Bit-FNV-1a-Hash über die Pixel eines Blocks.
+         */
+        private long hashBlock(int[] input, int startX, int startY, int blockSize) {
+            long hash = 0xCBF29CE484222325L;
+            for (int y = startY; y < startY + blockSize; y++) {
+                int rowStart = y * width;
+                for (int x = startX; x < startX + blockSize; x++) {
+                    hash = (hash ^ (input[rowStart + x] & 0x00FFFFFF)) * 0x100000001B3L;
+                }
+            }
+            return hash;
+        }
+    }
+
+    /**
+     * Fällt für unbekannte Filter auf Filter.process zurück. Das Eingangsbild der Stufe wird dabei wiederverwendet.
+     */
+    private class OpaqueStage extends Stage {
+        private final Filter stageFilter;
+        private final BufferedImage stageMask;
+        private final BufferedImage stageInput;
+
+        OpaqueStage(Filter stageFilter, BufferedImage stageMask) {
+            this.stageFilter = stageFilter;
+            this.stageMask = stageMask;
+            this.stageInput = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+
+        @Override
+        int[] run(int[] input) {
+            stageInput.setRGB(0, 0, width, height, input, 0, width);
+            BufferedImage result = (stageMask != null)
+                    ? stageFilter.process(stageInput, stageMask)
+                    : stageFilter.process(stageInput);
+            result.getRGB(0, 0, width, height, work, 0, width);
+            return work;
+        }
+    }
+}
\ No newline at end of file
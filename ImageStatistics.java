@@ -0,0 +1,230 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.IdentityHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * ImageStatistics enthält die Histogramme der Farbkanäle und der Graustufen eines Bilds sowie die daraus
+ * abgeleiteten Minima, Maxima und Mittelwerte.
+ * <p>
+ * Alle Werte entstehen in einem einzigen Durchlauf über das Bild. Der Durchlauf wird in Streifen auf mehrere
+ * Threads verteilt; jeder Thread zählt in eigene Teilhistogramme, die am Ende zusammengeführt werden.
+ * Die Statistik wird nicht global zwischengespeichert, da sich ein Bild danach noch ändern kann. Wer sie für mehrere
+ * Filter auf demselben, unveränderten Bild benötigt, berechnet sie einmal und übergibt sie explizit, zum Beispiel
+ * an {@link ThresholdFilter#process(ImageStatistics, BufferedImage...)}, oder legt für einen Durchlauf einen
+ * {@link Cache} an.
+ */
+public final class ImageStatistics {
+
+    /**
+     * Die Kanäle, für die Histogramme erstellt werden.
+     */
+    public enum Channel {
+        RED, GREEN, BLUE,
+        /** Die Graustufe wie beim MonochromeFilter: 0,299 Rot + 0,587 Grün + 0,114 Blau. */
+        GRAY
+    }
+
+    private static final int BINS = 256;
+    private static final int CHANNELS = Channel.values().length;
+
+    /**
+     * Merkt sich die Statistik je Bild für die Dauer eines Durchlaufs, zum Beispiel für alle Filter, die
+     * nacheinander auf dasselbe Eingangsbild angewendet werden. Die Bilder werden über ihre Identität erkannt und
+     * dürfen sich nicht ändern, solange der Zwischenspeicher verwendet wird; er wird deshalb je Durchlauf angelegt
+     * und danach verworfen.
+     */
+    public static final class Cache {
+        private final Map<BufferedImage, ImageStatistics> statistics = new IdentityHashMap<>();
+
+        /**
+         * Liefert die Statistik eines Bilds und berechnet sie beim ersten Aufruf für dieses Bild.
+         *
+         * @param image das Bild
+         * @return die Statistik des Bilds
+         */
+        public synchronized ImageStatistics get(BufferedImage image) {
+            return statistics.computeIfAbsent(image, ImageStatistics::compute);
+        }
+    }
+
+    /**
+     * Zählt die Zeilen [fromY, toY) in die Teilhistogramme eines Threads.
+     */
+    private interface StripCounter {
+        void count(int fromY, int toY, int[][] partial);
+    }
+
+    private final long[][] histograms;
+    private final long pixelCount;
+    private final int[] min = new int[CHANNELS];
+    private final int[] max = new int[CHANNELS];
+    private final double[] mean = new double[CHANNELS];
+
+    private ImageStatistics(long[][] histograms) {
+        this.histograms = histograms;
+        long count = 0;
+        for (long binCount : histograms[0]) {
+            count += binCount;
+        }
+        this.pixelCount = count;
+
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            long[] histogram = histograms[channel];
+            min[channel] = -1;
+            max[channel] = -1;
+            long sum = 0;
+            for (int value = 0; value < BINS; value++) {
+                if (histogram[value] > 0) {
+                    if (min[channel] < 0) {
+                        min[channel] = value;
+                    }
+                    max[channel] = value;
+                    sum += histogram[value] * value;
+                }
+            }
+            mean[channel] = (count > 0) ? (double) sum / count : 0;
+        }
+    }
+
+    /**
+     * Berechnet die Statistik eines Bilds.
+     *
+     * @param image das Bild
+     * @return die Statistik des Bilds
+     */
+    public static ImageStatistics compute(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int chunkHeight = AutoTuner.profileFor(ImageStatistics.class, width, height).getTileHeight();
+        return compute(width, height, (fromY, toY, partial) -> {
+            int rowsPerChunk = Math.min(chunkHeight, toY - fromY);
+            int[] rows = new int[width * rowsPerChunk];
+            for (int y = fromY; y < toY; y += rowsPerChunk) {
+                int rowCount = Math.min(rowsPerChunk, toY - y);
+                image.getRGB(0, y, width, rowCount, rows, 0, width);
+                count(rows, 0, width * rowCount, partial);
+            }
+        });
+    }
+
+    /**
+     * Berechnet die Statistik eines Bilds, dessen Pixel bereits als Array vorliegen.
+     *
+     * @param pixels die Pixel zeilenweise
+     * @param width  die Bildbreite
+     * @param height die Bildhöhe
+     * @return die Statistik des Bilds
+     */
+    static ImageStatistics compute(int[] pixels, int width, int height) {
+        return compute(width, height, (fromY, toY, partial) -> count(pixels, fromY * width, toY * width, partial));
+    }
+
+    /**
+     * Verteilt die Zeilen auf die Threads und führt deren Teilhistogramme zusammen.
+     */
+    private static ImageStatistics compute(int width, int height, StripCounter counter) {
+        ExecutionProfile profile = AutoTuner.profileFor(ImageStatistics.class, width, height);
+
+        // Ein Streifen je Thread, damit jeder Thread nur ein Teilhistogramm anlegt
+        int threads = Math.max(1, Math.min(profile.getThreads(), height));
+        int stripHeight = (height + threads - 1) / threads;
+        int[][][] partials = new int[(height + stripHeight - 1) / stripHeight][][];
+        Parallel.forEachStrip(height, stripHeight, threads, (fromY, toY) -> {
+            int[][] partial = new int[CHANNELS][BINS];
+            counter.count(fromY, toY, partial);
+            partials[fromY / stripHeight] = partial;
+        });
+
+        long[][] histograms = new long[CHANNELS][BINS];
+        for (int[][] partial : partials) {
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                for (int value = 0; value < BINS; value++) {
+                    histograms[channel][value] += partial[channel][value];
+                }
+            }
+        }
+        return new ImageStatistics(histograms);
+    }
+
+    /**
+     * Zählt die Pixel [from, to) in die Teilhistogramme.
+     */
+    private static void count(int[] pixels, int from, int to, int[][] partial) {
+        int[] red = partial[Channel.RED.ordinal()];
+        int[] green = partial[Channel.GREEN.ordinal()];
+        int[] blue = partial[Channel.BLUE.ordinal()];
+        int[] gray = partial[Channel.GRAY.ordinal()];
+        for (int i = from; i < to; i++) {
+            int pixel = pixels[i];
+            int r = (pixel >> 16) & 0xFF;
+            int g = (pixel >> 8) & 0xFF;
+            int b = pixel & 0xFF;
+            red[r]++;
+            green[g]++;
+            blue[b]++;
+            gray[(int) (0.299 * r + 0.587 * g + 0.114 * b)]++;
+        }
+    }
+
+    /**
+     * Liefert die Anzahl der Pixel.
+     *
+     * @return die Anzahl der Pixel
+     */
+    public long getPixelCount() {
+        return pixelCount;
+    }
+
+    /**
+     * Liefert das Histogramm eines Kanals.
+     *
+     * @param channel der Kanal
+     * @return die Anzahl der Pixel je Wert von 0 bis 255
+     */
+    public long[] getHistogram(Channel channel) {
+        return histograms[channel.ordinal()].clone();
+    }
+
+    /**
+     * Liefert den kleinsten Wert eines Kanals.
+     *
+     * @param channel der Kanal
+     * @return der kleinste vorkommende Wert
+     */
+    public int getMin(Channel channel) {
+        return min[channel.ordinal()];
+    }
+
+    /**
+     * Liefert den größten Wert eines Kanals.
+     *
+     * @param channel der Kanal
+     * @return der größte vorkommende Wert
+     */
+    public int getMax(Channel channel) {
+        return max[channel.ordinal()];
+    }
+
+    /**
+     * Liefert den Mittelwert eines Kanals.
+     *
+     * @param channel der Kanal
+     * @return der Mittelwert über alle Pixel
+     */
+    public double getMean(Channel channel) {
+        return mean[channel.ordinal()];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder("ImageStatistics[").append(pixelCount).append(" Pixel");
+        for (Channel channel : Channel.values()) {
+            description.append(String.format(Locale.ROOT, "; %s %d..%d, Mittel %.2f", channel,
+                    getMin(channel), getMax(channel), getMean(channel)));
+        }
+        return description.append("]").toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,166 @@
+package filters;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Eine gefilterte Sicht auf ein Bild, die erst bei Zugriff berechnet wird.
+ * <p>
+ * Das Bild ist in quadratische Kacheln aufgeteilt. Eine Kachel wird beim ersten Zugriff über den
+ * {@link RegionProcessor} berechnet und danach zwischengespeichert. Beim Verschieben eines Sichtfensters über ein
+ * großes Bild werden so nur die sichtbaren Kacheln berechnet. Optional werden nur die zuletzt verwendeten Kacheln
+ * behalten, damit der Speicherbedarf begrenzt bleibt. Filter, die keine Ausschnitte unterstützen, werden beim ersten
+ * Zugriff einmal vollständig angewendet.
+ * <p>
+ * Bildabhängige Filter wie ein adaptiver ThresholdFilter werden beim ersten Zugriff einmal mit der Statistik des
+ * ganzen Bilds aufgelöst. Alle Kacheln verwenden daher dieselben Schwellenwerte wie filter.process auf dem ganzen
+ * Bild, und die Statistik wird nicht je Kachel neu berechnet.
+ */
+public class LazyFilteredImage {
+    private final Filter filter;
+    private final BufferedImage sourceImage;
+    private final BufferedImage maskImage;
+    private final int tileSize;
+    private final Map<Long, int[]> tiles;
+    private Filter resolvedFilter;
+    private BufferedImage fullResult;
+    private long computedTiles;
+
+    /**
+     * Erstellt eine gefilterte Sicht, die alle berechneten Kacheln behält.
+     *
+     * @param filter   der anzuwendende Filter
+     * @param tileSize die Kantenlänge der Kacheln
+     * @param images   das Quellbild und optional die Maske
+     */
+    public LazyFilteredImage(Filter filter, int tileSize, BufferedImage... images) {
+        this(filter, tileSize, Integer.MAX_VALUE, images);
+    }
+
+    /**
+     * Erstellt eine gefilterte Sicht, die höchstens maxTiles Kacheln behält.
+     *
+     * @param filter   der anzuwendende Filter
+     * @param tileSize die Kantenlänge der Kacheln
+     * @param maxTiles die maximale Anzahl zwischengespeicherter Kacheln; die am längsten unbenutzten werden verworfen
+     * @param images   das Quellbild und optional die Maske
+     */
+    public LazyFilteredImage(Filter filter, int tileSize, int maxTiles, BufferedImage... images) {
+        if (images.length == 0) {
+            throw new IllegalArgumentException("No input images provided.");
+        }
+        if (tileSize <= 0 || maxTiles <= 0) {
+            throw new IllegalArgumentException("Tile size and tile limit must be positive.");
+        }
+        this.filter = filter;
+        this.sourceImage = images[0];
+        this.maskImage = images.length > 1 ? images[1] : null;
+        this.tileSize = tileSize;
+        this.tiles = new LinkedHashMap<Long, int[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                return size() > maxTiles;
+            }
+        };
+    }
+
+    public int getWidth() {
+        return sourceImage.getWidth();
+    }
+
+    public int getHeight() {
+        return sourceImage.getHeight();
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Liefert die Anzahl der bisher berechneten Kacheln, einschließlich erneut berechneter verworfener Kacheln.
+     *
+     * @return die Anzahl der Kachelberechnungen
+     */
+    public synchronized long getComputedTiles() {
+        return computedTiles;
+    }
+
+    /**
+     * Liefert den gefilterten Farbwert eines Pixels.
+     *
+     * @param x die x-Koordinate
+     * @param y die y-Koordinate
+     * @return der Farbwert des gefilterten Pixels
+     */
+    public synchronized int getRGB(int x, int y) {
+        if (x < 0 || y < 0 || x >= getWidth() || y >= getHeight()) {
+            throw new IllegalArgumentException("Coordinate lies outside the image.");
+        }
+        int tileX = x / tileSize;
+        int tileY = y / tileSize;
+        Rectangle bounds = tileBounds(tileX, tileY);
+        return getTile(tileX, tileY)[(y - bounds.y) * bounds.width + (x - bounds.x)];
+    }
+
+    /**
+     * Liefert einen gefilterten Ausschnitt. Es werden nur die Kacheln berechnet, die den Ausschnitt schneiden.
+     *
+     * @param region der Ausschnitt; er wird auf die Bildgrenzen beschränkt
+     * @return ein Bild in der Größe des Ausschnitts
+     */
+    public synchronized BufferedImage getRegion(Rectangle region) {
+        Rectangle clipped = region.intersection(new Rectangle(0, 0, getWidth(), getHeight()));
+        if (clipped.isEmpty()) {
+            throw new IllegalArgumentException("Region lies outside the image.");
+        }
+        BufferedImage resultImage = new BufferedImage(clipped.width, clipped.height, BufferedImage.TYPE_INT_RGB);
+        for (int tileY = clipped.y / tileSize; tileY <= (clipped.y + clipped.height - 1) / tileSize; tileY++) {
+            for (int tileX = clipped.x / tileSize; tileX <= (clipped.x + clipped.width - 1) / tileSize; tileX++) {
+                Rectangle bounds = tileBounds(tileX, tileY);
+                Rectangle part = bounds.intersection(clipped);
+                int[] pixels = Regions.crop(getTile(tileX, tileY), bounds, part);
+                resultImage.setRGB(part.x - clipped.x, part.y - clipped.y, part.width, part.height, pixels, 0, part.width);
+            }
+        }
+        return resultImage;
+    }
+
+    /**
+     * Liefert die Pixel einer Kachel und berechnet sie bei Bedarf.
+     */
+    private int[] getTile(int tileX, int tileY) {
+        long key = ((long) tileY << 32) | tileX;
+        int[] tile = tiles.get(key);
+        if (tile == null) {
+            Rectangle bounds = tileBounds(tileX, tileY);
+            if (resolvedFilter == null) {
+                resolvedFilter = Regions.resolve(filter, sourceImage, maskImage, new ImageStatistics.Cache());
+            }
+            if (Regions.supports(resolvedFilter)) {
+                tile = RegionProcessor.processRegion(resolvedFilter, bounds, sourceImage, maskImage);
+            } else {
+                // Filter ohne Ausschnittsberechnung werden einmal vollständig angewendet
+                if (fullResult == null) {
+                    fullResult = (maskImage != null)
+                            ? resolvedFilter.process(sourceImage, maskImage)
+                            : resolvedFilter.process(sourceImage);
+                }
+                tile = Regions.read(fullResult, bounds);
+            }
+            tiles.put(key, tile);
+            computedTiles++;
+        }
+        return tile;
+    }
+
+    /**
+     * Liefert das Rechteck einer Kachel; Kacheln am Bildrand sind entsprechend kleiner.
+     */
+    private Rectangle tileBounds(int tileX, int tileY) {
+        int x = tileX * tileSize;
+        int y = tileY * tileSize;
+        return new Rectangle(x, y, Math.min(tileSize, getWidth() - x), Math.min(tileSize, getHeight() - y));
+    }
+}
\ No newline at end of file
@@ -3,16 +3,21 @@ package main;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
 
 import javax.imageio.ImageIO;
 
+import filters.AutoTuner;
 import filters.ChainFilter;
 import filters.ColorBandFilter;
 import filters.ColorReplacementFilter;
 import filters.Filter;
+import filters.ImageStatistics;
+import filters.MedianFilter;
 import filters.MonochromeFilter;
 import filters.PixelGraphicFilter;
 import filters.PseudoNegativeImage;
@@ -31,23 +36,21 @@ public class Main {
      * @param args Die Kommandozeilenargumente.
      */
     public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("benchmark")) {
+            runBenchmark(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
+
+        registerFilters(new Random());
+        if (args.length > 0 && args[0].equals("calibrate")) {
+            calibrateFilters();
+            return;
+        }
+
         try {
             BufferedImage image = ImageIO.read(new File("images/test_image.bmp"));
             BufferedImage mask = ImageIO.read(new File("images/mask.bmp"));
 
-            // Hinzufügen der Filter zum HashMap
-            filters.put("monochrome", new MonochromeFilter());
-            filters.put("colorBand", new ColorBandFilter(ColorBandFilter.ColorBand.ROT));
-            filters.put("threshold", new ThresholdFilter(128));
-            filters.put("multiThreshold", new ThresholdFilter(64, 128, 192));
-            filters.put("colorReplacement", createColorReplacementChainFilter());
-            filters.put("multiColorReplacement", createMultiColorReplacementChainFilter());
-            filters.put("blurWithoutMask", new BlurFilter(5, false));
-            filters.put("blurWithMask", new BlurFilter(10, true));
-            filters.put("pixelGraphicWithoutMask", new PixelGraphicFilter(10, false));
-            filters.put("pixelGraphicWithMask", new PixelGraphicFilter(15, true));
-            filters.put("negativFilter", new PseudoNegativeImage());
-
             Scanner scanner = new Scanner(System.in);
             System.out.println("Verfügbare Filter:");
             for (String filterName : filters.keySet()) {
@@ -83,6 +86,73 @@ public class Main {
         }
     }
 
+    /**
+     * Registriert alle verfügbaren Filter unter ihrem Namen.
+     *
+     * @param random Der Zufallsgenerator für die Ersatzfarben der Farbersetzung.
+     */
+    private static void registerFilters(Random random) {
+        // Hinzufügen der Filter zum HashMap
+        filters.put("monochrome", new MonochromeFilter());
+        filters.put("colorBand", new ColorBandFilter(ColorBandFilter.ColorBand.ROT));
+        filters.put("threshold", new ThresholdFilter(128));
+        filters.put("multiThreshold", new ThresholdFilter(64, 128, 192));
+        filters.put("adaptiveThreshold", ThresholdFilter.otsu(1));
+        filters.put("adaptiveMultiThreshold", ThresholdFilter.otsu(3));
+        filters.put("colorReplacement", createColorReplacementChainFilter(random));
+        filters.put("multiColorReplacement", createMultiColorReplacementChainFilter(random));
+        filters.put("blurWithoutMask", new BlurFilter(5, false));
+        filters.put("blurWithMask", new BlurFilter(10, true));
+        filters.put("pixelGraphicWithoutMask", new PixelGraphicFilter(10, false));
+        filters.put("pixelGraphicWithMask", new PixelGraphicFilter(15, true));
+        filters.put("negativFilter", new PseudoNegativeImage());
+        filters.put("medianWithoutMask", new MedianFilter(2, false));
+        filters.put("medianWithMask", new MedianFilter(3, true));
+    }
+
+    /**
+     * Kalibriert die Ausführungsprofile aller registrierten Filter und speichert sie für spätere Läufe.
+     */
+    public static void calibrateFilters() {
+        System.out.println("Kalibrierung der Filter läuft...");
+        try {
+            AutoTuner.calibrate(filters.values().toArray(new Filter[0]));
+            System.out.println("Kalibrierung gespeichert in " + AutoTuner.getTuningFile().toAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Fehler beim Speichern der Kalibrierung: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Führt den Benchmark über alle registrierten Filter aus. Die Ersatzfarben der Farbersetzung werden aus dem
+     * Startwert des Benchmarks erzeugt, damit die Prüfsummen zwischen zwei Läufen vergleichbar sind.
+     * Weicht eine Prüfsumme ab, endet das Programm mit dem Status 1.
+     *
+     * @param args Die Optionen des Benchmarks.
+     */
+    public static void runBenchmark(String[] args) {
+        Benchmark benchmark;
+        try {
+            benchmark = new Benchmark(args);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Ungültige Option: " + e.getMessage());
+            System.out.println(Benchmark.USAGE);
+            System.exit(2);
+            return;
+        }
+
+        registerFilters(new Random(benchmark.getSeed()));
+        try {
+            if (!benchmark.run(filters)) {
+                System.out.println("Fehler: Mindestens eine Prüfsumme weicht vom Referenzlauf ab.");
+                System.exit(1);
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            System.out.println("Fehler beim Benchmark: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
     /**
      * Wendet alle verfügbaren Filter auf ein Bild an und speichert die Ergebnisse.
      *
@@ -90,11 +160,22 @@ public class Main {
      * @param mask  Die Maske, falls vorhanden.
      */
     public static void testFilters(BufferedImage image, BufferedImage mask) {
+        // Die Statistik des Eingangsbilds wird für alle bildabhängigen Filter dieses Durchlaufs nur einmal berechnet
+        ImageStatistics.Cache statistics = new ImageStatistics.Cache();
         for (Map.Entry<String, Filter> entry : filters.entrySet()) {
             String filterName = entry.getKey();
             Filter filter = entry.getValue();
 
-            BufferedImage result = applyFilter(image, mask, filter);
+            if (filter instanceof ChainFilter) {
+                ChainFilter chainFilter = (ChainFilter) filter;
+                System.out.println("Filterkette " + filterName + ":");
+                System.out.println(chainFilter.explain());
+                if (!chainFilter.verifyPlan(Arrays.asList(image), mask)) {
+                    System.out.println("Warnung: Der Plan der Filterkette " + filterName + " weicht von der ursprünglichen Kette ab.");
+                }
+            }
+
+            BufferedImage result = applyFilter(image, mask, filter, statistics);
             File output = new File(filterName + "_output.bmp");
             try {
                 ImageIO.write(result, "bmp", output);
@@ -114,6 +195,28 @@ public class Main {
      * @return Das bearbeitete Bild.
      */
     public static BufferedImage applyFilter(BufferedImage image, BufferedImage mask, Filter filter) {
+        return applyFilter(image, mask, filter, new ImageStatistics.Cache());
+    }
+
+    /**
+     * Wendet einen einzelnen Filter auf ein Bild an. Adaptive ThresholdFilter und Filterketten entnehmen die Statistik
+     * des Eingangsbilds dem Zwischenspeicher, den sich alle Filter eines Durchlaufs teilen.
+     *
+     * @param image      Das Eingangsbild.
+     * @param mask       Die Maske, falls vorhanden.
+     * @param filter     Der anzuwendende Filter.
+     * @param statistics Der Zwischenspeicher für die Bildstatistik dieses Durchlaufs.
+     * @return Das bearbeitete Bild.
+     */
+    public static BufferedImage applyFilter(BufferedImage image, BufferedImage mask, Filter filter,
+            ImageStatistics.Cache statistics) {
+        BufferedImage[] images = (mask != null) ? new BufferedImage[] { image, mask } : new BufferedImage[] { image };
+        if (filter instanceof ThresholdFilter) {
+            return ((ThresholdFilter) filter).process(statistics, images);
+        }
+        if (filter instanceof ChainFilter) {
+            return ((ChainFilter) filter).process(statistics, images);
+        }
         if (filter != null) {
         	 if (mask != null) {
                  return filter.process(image, mask);
@@ -138,7 +241,7 @@ public class Main {
         // Abrufen der Filterkette anhand des Namens aus dem HashMap
         ChainFilter chainFilter = (ChainFilter) filters.get(filterName);
         if (chainFilter != null) {
-            return chainFilter.process(image);
+            return applyFilter(image, mask, chainFilter);
         } else {
             System.out.println("Filterkette mit dem Namen " + filterName + " nicht gefunden.");
             return image;
@@ -151,10 +254,20 @@ public class Main {
      * @return Die erstellte Filterkette.
      */
     public static ChainFilter createColorReplacementChainFilter() {
+        return createColorReplacementChainFilter(new Random());
+    }
+
+    /**
+     * Erstellt eine Filterkette für die Farbersetzung.
+     *
+     * @param random Der Zufallsgenerator für die Ersatzfarbe.
+     * @return Die erstellte Filterkette.
+     */
+    public static ChainFilter createColorReplacementChainFilter(Random random) {
         // Erstellen der Filterkette und Hinzufügen der Filter
         ChainFilter chainFilter = new ChainFilter(2);
         chainFilter.add(new ThresholdFilter(128));
-        chainFilter.add(new ColorReplacementFilter(0));
+        chainFilter.add(new ColorReplacementFilter(random, 0));
         return chainFilter;
     }
 
@@ -164,8 +277,18 @@ public class Main {
      * @return Die erstellte Filterkette.
      */
     public static ChainFilter createMultiColorReplacementChainFilter() {
+        return createMultiColorReplacementChainFilter(new Random());
+    }
+
+    /**
+     * Erstellt eine Filterkette für die mehrfache Farbersetzung.
+     *
+     * @param random Der Zufallsgenerator für die Ersatzfarben.
+     * @return Die erstellte Filterkette.
+     */
+    public static ChainFilter createMultiColorReplacementChainFilter(Random random) {
         ThresholdFilter multiThresholdFilter = new ThresholdFilter(64, 128, 192);
-        ColorReplacementFilter multiColorReplacementFilter = new ColorReplacementFilter(0, 96, 160, 255);
+        ColorReplacementFilter multiColorReplacementFilter = new ColorReplacementFilter(random, 0, 96, 160, 255);
 
         ChainFilter chainFilter = new ChainFilter(2);
         chainFilter.add(multiThresholdFilter);
@@ -0,0 +1,90 @@
+package filters;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Vergleicht die Laufzeit des MedianFilter mit gleitenden Histogrammen mit der naiven Variante, die für jedes Pixel
+ * das ganze Fenster sortiert. Beide Ergebnisse werden zusätzlich pixelgenau verglichen.
+ * <p>
+ * Aufruf: {@code java filters.MedianBenchmark [Bildgröße] [Radius...]}
+ */
+public class MedianBenchmark {
+
+    /**
+     * Führt den Benchmark aus.
+     *
+     * @param args optional die Kantenlänge des Testbilds, gefolgt von den zu messenden Radien
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 512;
+        int[] radii = args.length > 1
+                ? Arrays.stream(args, 1, args.length).mapToInt(Integer::parseInt).toArray()
+                : new int[] { 1, 2, 4, 8, 16 };
+
+        BufferedImage image = createNoisyImage(size, size, new Random(42));
+        BufferedImage mask = createMask(size, size);
+
+        System.out.println("Bildgröße: " + size + "x" + size);
+        System.out.println("Radius;Maske;Histogramm [ms];Naiv [ms];Faktor;Gleich");
+        for (int radius : radii) {
+            for (boolean useMask : new boolean[] { false, true }) {
+                MedianFilter filter = new MedianFilter(radius, useMask);
+
+                // Aufwärmen, damit der JIT-Compiler beide Varianten übersetzt hat
+                filter.process(image, mask);
+                filter.processNaive(image, mask);
+
+                long start = System.nanoTime();
+                BufferedImage fast = filter.process(image, mask);
+                long fastTime = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                BufferedImage naive = filter.processNaive(image, mask);
+                long naiveTime = System.nanoTime() - start;
+
+                boolean equal = Arrays.equals(fast.getRGB(0, 0, size, size, null, 0, size),
+                        naive.getRGB(0, 0, size, size, null, 0, size));
+                System.out.printf("%d;%b;%.1f;%.1f;%.1f;%b%n", radius, useMask, fastTime / 1e6, naiveTime / 1e6,
+                        (double) naiveTime / fastTime, equal);
+            }
+        }
+    }
+
+    /**
+     * Erzeugt ein Testbild aus einem Farbverlauf mit Salz-und-Pfeffer-Rauschen.
+     */
+    private static BufferedImage createNoisyImage(int width, int height, Random random) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int red = x * 255 / width;
+                int green = y * 255 / height;
+                int blue = (x + y) * 127 / (width + height);
+                int color = (red << 16) | (green << 8) | blue;
+                if (random.nextInt(10) == 0) {
+                    color = random.nextBoolean() ? 0xFFFFFF : 0x000000;
+                }
+                image.setRGB(x, y, color);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Erzeugt eine Maske, die einen Kreis in der Bildmitte freigibt.
+     */
+    private static BufferedImage createMask(int width, int height) {
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int radius = Math.min(width, height) / 3;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int dx = x - width / 2;
+                int dy = y - height / 2;
+                mask.setRGB(x, y, dx * dx + dy * dy <= radius * radius ? 0xFFFFFF : 0x000000);
+            }
+        }
+        return mask;
+    }
+}
\ No newline at end of file
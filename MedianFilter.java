@@ -0,0 +1,457 @@
+package filters;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Ein Rangfilter, der jedes Pixel durch den Median (oder ein anderes Perzentil) seiner Nachbarschaft ersetzt.
+ * Er eignet sich zur Rauschunterdrückung vor einem ThresholdFilter.
+ * <p>
+ * Anders als die übrigen AreaFilter arbeitet der Filter nicht auf festen Blöcken, sondern mit einem gleitenden
+ * Fenster der Größe blockSize x blockSize um jedes Pixel. Die Berechnung folgt dem Verfahren von Perreault und
+ * Hébert: Für jede Bildspalte wird ein Histogramm über die Fensterhöhe gepflegt, das Fensterhistogramm entsteht durch
+ * Addieren und Subtrahieren ganzer Spaltenhistogramme. Die feinen Histogrammstufen werden erst bei Bedarf
+ * nachgeführt. Der Aufwand pro Pixel hängt damit nicht vom Radius ab.
+ * <p>
+ * Mit Maske werden wie beim BlurFilter nur Pixel berücksichtigt, deren Maskenwert nicht schwarz ist; Pixel unter
+ * schwarzer Maske behalten ihren Originalwert.
+ */
+public class MedianFilter extends AreaFilter {
+    private static final int CHANNELS = 3;
+    private static final int BINS = 256;
+    private static final int COARSE_BINS = 16;
+
+    private final int radius;
+    private final int percentile;
+
+    /**
+     * Konstruiert einen Medianfilter.
+     *
+     * @param radius  der Radius des Fensters; das Fenster umfasst (2 * radius + 1)² Pixel
+     * @param useMask true, wenn der Filter eine Maske verwenden soll, andernfalls false
+     */
+    public MedianFilter(int radius, boolean useMask) {
+        this(radius, 50, useMask);
+    }
+
+    /**
+     * Konstruiert einen Rangfilter für ein beliebiges Perzentil.
+     *
+     * @param radius     der Radius des Fensters; das Fenster umfasst (2 * radius + 1)² Pixel
+     * @param percentile das Perzentil zwischen 0 (Minimum) und 100 (Maximum); 50 ergibt den Median
+     * @param useMask    true, wenn der Filter eine Maske verwenden soll, andernfalls false
+     */
+    public MedianFilter(int radius, int percentile, boolean useMask) {
+        super(2 * radius + 1, useMask);
+        if (radius < 0) {
+            throw new IllegalArgumentException("Radius must not be negative.");
+        }
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        this.radius = radius;
+        this.percentile = percentile;
+    }
+
+    /**
+     * Wendet den Filter mit gleitenden Histogrammen auf das Bild an.
+     *
+     * @param images das Quellbild und, falls useMask gesetzt ist, die Maske
+     * @return das gefilterte Bild
+     */
+    @Override
+    public BufferedImage process(BufferedImage... images) {
+        BufferedImage sourceImage = images[0];
+        BufferedImage maskImage = images.length > 1 ? images[1] : null;
+        if (useMask && maskImage == null) {
+            throw new IllegalArgumentException("No mask image provided.");
+        }
+        int width = sourceImage.getWidth();
+        int height = sourceImage.getHeight();
+
+        int[] source = sourceImage.getRGB(0, 0, width, height, null, 0, width);
+        int[] mask = useMask ? maskImage.getRGB(0, 0, width, height, null, 0, width) : null;
+        int[] result = new int[width * height];
+        ExecutionProfile profile = AutoTuner.profileFor(getClass(), width, height);
+        // Jeder Thread nutzt einen Satz Spaltenhistogramme für alle seine Streifen
+        Queue<ColumnHistograms> histograms = new ConcurrentLinkedQueue<>();
+        Parallel.forEachStrip(height, stripHeight(profile), profile.getThreads(), (fromY, toY) -> {
+            ColumnHistograms columns = histograms.poll();
+            if (columns == null) {
+                columns = new ColumnHistograms(width);
+            }
+            processRows(source, mask, result, width, height, fromY, toY, columns);
+            histograms.add(columns);
+        });
+
+        BufferedImage resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        resultImage.setRGB(0, 0, width, height, result, 0, width);
+        return resultImage;
+    }
+
+    /**
+     * Wendet den Filter naiv an, indem für jedes Pixel das ganze Fenster gesammelt und sortiert wird.
+     * Dient als Referenz für Tests und Benchmarks.
+     *
+     * @param images das Quellbild und, falls useMask gesetzt ist, die Maske
+     * @return das gefilterte Bild
+     */
+    BufferedImage processNaive(BufferedImage... images) {
+        BufferedImage sourceImage = images[0];
+        BufferedImage maskImage = images.length > 1 ? images[1] : null;
+        if (useMask && maskImage == null) {
+            throw new IllegalArgumentException("No mask image provided.");
+        }
+        int width = sourceImage.getWidth();
+        int height = sourceImage.getHeight();
+        BufferedImage resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int[] pixels = new int[blockSize * blockSize];
+        int[] maskPixels = new int[blockSize * blockSize];
+
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int index = 0;
+                for (int wy = Math.max(0, y - radius); wy <= Math.min(height - 1, y + radius); wy++) {
+                    for (int wx = Math.max(0, x - radius); wx <= Math.min(width - 1, x + radius); wx++) {
+                        int maskRGB = useMask ? maskImage.getRGB(wx, wy) : 0;
+                        if (!useMask || (maskRGB & 0x00FFFFFF) != 0x00000000) {
+                            pixels[index] = sourceImage.getRGB(wx, wy);
+                            maskPixels[index] = maskRGB;
+                            index++;
+                        }
+                    }
+                }
+
+                if (useMask && (maskImage.getRGB(x, y) & 0x00FFFFFF) == 0x00000000) {
+                    resultImage.setRGB(x, y, sourceImage.getRGB(x, y));
+                } else if (useMask) {
+                    resultImage.setRGB(x, y, calculatePixel(pixels, maskPixels, index, blockSize));
+                } else {
+                    resultImage.setRGB(x, y, calculatePixel(pixels, index, blockSize));
+                }
+            }
+        }
+        return resultImage;
+    }
+
+    /**
+     * Liefert die Streifenhöhe für die parallele Berechnung. Jeder Streifen baut die Spaltenhistogramme aus 2r+1
+     * Zeilen auf; damit dieser Aufwand bei großen Radien nicht überwiegt, ist ein Streifen mindestens viermal so hoch.
+     *
+     * @param profile das Ausführungsprofil
+     * @return die Streifenhöhe in Zeilen
+     */
+    private int stripHeight(ExecutionProfile profile) {
+        return Math.max(profile.getTileHeight(), 4 * blockSize);
+    }
+
+    /**
+     * Filtert die Zeilen [fromY, toY) mit gleitenden Histogrammen. Die Spaltenhistogramme werden vom Fenster, das sie
+     * gerade enthalten, zum Fenster für fromY verschoben; schließt der Bereich an den vorherigen an, entfallen dabei
+     * nur die Zeilen, die ohnehin aus dem Fenster fallen.
+     *
+     * @param source  die Quellpixel
+     * @param mask    die Maskenpixel oder null
+     * @param result  das Array für die Ergebnispixel
+     * @param width   die Bildbreite
+     * @param height  die Bildhöhe
+     * @param fromY   die erste zu berechnende Zeile (inklusive)
+     * @param toY     die letzte zu berechnende Zeile (exklusive)
+     * @param columns die Spaltenhistogramme für diese Bildbreite, leer oder aus einem früheren Aufruf
+     */
+    void processRows(int[] source, int[] mask, int[] result, int width, int height, int fromY, int toY,
+            ColumnHistograms columns) {
+        int[][] columnFine = columns.fine;
+        int[][] columnCoarse = columns.coarse;
+        int[] columnCount = columns.count;
+
+        int[][] kernelFine = new int[CHANNELS][BINS];
+        int[][] kernelCoarse = new int[CHANNELS][COARSE_BINS];
+        int[][] lastUpdate = new int[CHANNELS][COARSE_BINS];
+
+        for (int y = fromY; y < toY; y++) {
+            columns.moveTo(source, mask, Math.max(0, y - radius), Math.min(height - 1, y + radius));
+
+            // Fensterhistogramm für x = 0 aufbauen; die feinen Stufen werden erst bei Bedarf nachgeführt
+            int count = 0;
+            for (int channel = 0; channel < CHANNELS; channel++) {
+                Arrays.fill(kernelCoarse[channel], 0);
+                Arrays.fill(lastUpdate[channel], Integer.MIN_VALUE / 2);
+            }
+            for (int column = 0; column <= Math.min(width - 1, radius); column++) {
+                addColumn(columnCoarse, kernelCoarse, column, 1);
+                count += columnCount[column];
+            }
+
+            for (int x = 0; x < width; x++) {
+                if (x > 0) {
+                    if (x - radius - 1 >= 0) {
+                        addColumn(columnCoarse, kernelCoarse, x - radius - 1, -1);
+                        count -= columnCount[x - radius - 1];
+                    }
+                    if (x + radius < width) {
+                        addColumn(columnCoarse, kernelCoarse, x + radius, 1);
+                        count += columnCount[x + radius];
+                    }
+                }
+
+                int index = y * width + x;
+                if (mask != null && (mask[index] & 0x00FFFFFF) == 0x00000000) {
+                    result[index] = 0xFF000000 | source[index];
+                    continue;
+                }
+
+                int rank = rank(count);
+                int color = 0xFF000000;
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    int value = select(columnFine[channel], kernelFine[channel], kernelCoarse[channel],
+                            lastUpdate[channel], width, x, rank);
+                    color |= value << (16 - 8 * channel);
+                }
+                result[index] = color;
+            }
+        }
+    }
+
+    /**
+     * Die Histogramme aller Spalten über ein Fenster von Bildzeilen. Ein Satz wird von einem Thread für alle
+     * seine Streifen verwendet.
+     */
+    static final class ColumnHistograms {
+        private final int width;
+        private final int[][] fine;
+        private final int[][] coarse;
+        private final int[] count;
+        // Die Zeilen [fromRow, toRow] sind in den Histogrammen enthalten; zu Beginn keine
+        private int fromRow = 0;
+        private int toRow = -1;
+
+        ColumnHistograms(int width) {
+            this.width = width;
+            this.fine = new int[CHANNELS][width * BINS];
+            this.coarse = new int[CHANNELS][width * COARSE_BINS];
+            this.count = new int[width];
+        }
+
+        /**
+         * Verschiebt das Fenster auf die Zeilen [from, to], indem nur die Zeilen entfernt und hinzugefügt werden,
+         * in denen sich altes und neues Fenster unterscheiden.
+         */
+        void moveTo(int[] source, int[] mask, int from, int to) {
+            for (int y = fromRow; y <= toRow; y++) {
+                if (y < from || y > to) {
+                    update(source, mask, y, -1);
+                }
+            }
+            for (int y = from; y <= to; y++) {
+                if (y < fromRow || y > toRow) {
+                    update(source, mask, y, 1);
+                }
+            }
+            fromRow = from;
+            toRow = to;
+        }
+
+        /**
+         * Nimmt eine Bildzeile in die Spaltenhistogramme auf oder entfernt sie daraus.
+         */
+        private void update(int[] source, int[] mask, int y, int delta) {
+            int rowStart = y * width;
+            for (int x = 0; x < width; x++) {
+                if (mask != null && (mask[rowStart + x] & 0x00FFFFFF) == 0x00000000) {
+                    continue;
+                }
+                int pixel = source[rowStart + x];
+                for (int channel = 0; channel < CHANNELS; channel++) {
+                    int value = (pixel >> (16 - 8 * channel)) & 0xFF;
+                    fine[channel][x * BINS + value] += delta;
+                    coarse[channel][x * COARSE_BINS + (value >> 4)] += delta;
+                }
+                count[x] += delta;
+            }
+        }
+    }
+
+    /**
+     * Addiert oder subtrahiert die groben Histogramme einer Spalte zum Fensterhistogramm.
+     */
+    private static void addColumn(int[][] columnCoarse, int[][] kernelCoarse, int column, int sign) {
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            int[] coarse = columnCoarse[channel];
+            int[] kernel = kernelCoarse[channel];
+            int offset = column * COARSE_BINS;
+            for (int bin = 0; bin < COARSE_BINS; bin++) {
+                kernel[bin] += sign * coarse[offset + bin];
+            }
+        }
+    }
+
+    /**
+     * Sucht den Wert mit dem gegebenen Rang im Fenster um x. Zuerst wird die grobe Stufe bestimmt, danach wird nur
+     * deren feines Teilhistogramm auf den aktuellen Fensterstand gebracht und durchsucht.
+     */
+    private int select(int[] columnFine, int[] kernelFine, int[] kernelCoarse, int[] lastUpdate, int width,
+            int x, int rank) {
+        int coarseBin = 0;
+        int cumulative = 0;
+        while (cumulative + kernelCoarse[coarseBin] <= rank) {
+            cumulative += kernelCoarse[coarseBin];
+            coarseBin++;
+        }
+
+        int fineOffset = coarseBin * COARSE_BINS;
+        int previousX = lastUpdate[coarseBin];
+        if (x - previousX > blockSize) {
+            // Fenster überlappen nicht mehr: feines Teilhistogramm neu aufbauen
+            Arrays.fill(kernelFine, fineOffset, fineOffset + COARSE_BINS, 0);
+            for (int column = Math.max(0, x - radius); column <= Math.min(width - 1, x + radius); column++) {
+                addFine(columnFine, kernelFine, column, fineOffset, 1);
+            }
+        } else {
+            for (int column = Math.max(0, previousX - radius); column < Math.max(0, x - radius); column++) {
+                addFine(columnFine, kernelFine, column, fineOffset, -1);
+            }
+            for (int column = previousX + radius + 1; column <= Math.min(width - 1, x + radius); column++) {
+                addFine(columnFine, kernelFine, column, fineOffset, 1);
+            }
+        }
+        lastUpdate[coarseBin] = x;
+
+        int value = fineOffset;
+        while (cumulative + kernelFine[value] <= rank) {
+            cumulative += kernelFine[value];
+            value++;
+        }
+        return value;
+    }
+
+    /**
+     * Addiert oder subtrahiert ein feines Teilhistogramm einer Spalte zum Fensterhistogramm.
+     */
+    private static void addFine(int[] columnFine, int[] kernelFine, int column, int fineOffset, int sign) {
+        int offset = column * BINS + fineOffset;
+        for (int bin = 0; bin < COARSE_BINS; bin++) {
+            kernelFine[fineOffset + bin] += sign * columnFine[offset + bin];
+        }
+    }
+
+    /**
+     * Liefert den Rang des gesuchten Perzentils für die gegebene Anzahl von Pixeln.
+     *
+     * @param count die Anzahl der Pixel im Fenster
+     * @return der nullbasierte Rang
+     */
+    private int rank(int count) {
+        return (count - 1) * percentile / 100;
+    }
+
+    /**
+     * Berechnet das Perzentil der Pixel im Fenster, unter Berücksichtigung der Maske.
+     *
+     * @param pixels     das Array der Pixel im Fenster
+     * @param maskPixels das Array der Maskenpixel im Fenster
+     * @param count      die Anzahl der gültigen Pixel im Fenster
+     * @param blockSize  die Größe des Fensters
+     * @return die neue Pixel-Farbe
+     */
+    @Override
+    protected int calculatePixel(int[] pixels, int[] maskPixels, int count, int blockSize) {
+        int[] selected = new int[count];
+        int selectedCount = 0;
+        for (int i = 0; i < count; i++) {
+            if ((maskPixels[i] & 0x00FFFFFF) != 0x00000000) {
+                selected[selectedCount++] = pixels[i];
+            }
+        }
+        if (selectedCount == 0) {
+            return 0;  // Schwarze Farbe, wenn keine gültigen Pixel gefunden wurden
+        }
+        return calculatePixel(selected, selectedCount, blockSize);
+    }
+
+    /**
+     * Berechnet das Perzentil der Pixel im Fenster, getrennt für jeden Farbkanal.
+     *
+     * @param pixels    das Array der Pixel im Fenster
+     * @param count     die Anzahl der gültigen Pixel im Fenster
+     * @param blockSize die Größe des Fensters
+     * @return die neue Pixel-Farbe
+     */
+    @Override
+    protected int calculatePixel(int[] pixels, int count, int blockSize) {
+        int[] values = new int[count];
+        int color = 0;
+        for (int channel = 0; channel < CHANNELS; channel++) {
+            int shift = 16 - 8 * channel;
+            for (int i = 0; i < count; i++) {
+                values[i] = (pixels[i] >> shift) & 0xFF;
+            }
+            Arrays.sort(values);
+            color |= values[rank(count)] << shift;
+        }
+        return color;
+    }
+
+    /**
+     * Der Medianfilter berechnet ein gleitendes Fenster pro Pixel statt fester Blöcke.
+     *
+     * @return false
+     */
+    @Override
+    boolean isBlockwise() {
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "MedianFilter[radius=" + radius + ", percentile=" + percentile + ", mask=" + useMask + "]";
+    }
+
+    /**
+     * Der Eingangsausschnitt umfasst den Ausgabeausschnitt und einen Rand von radius Pixeln.
+     *
+     * @param region der Ausgabeausschnitt
+     * @param width  die Breite des Gesamtbilds
+     * @param height die Höhe des Gesamtbilds
+     * @return der benötigte Eingangsausschnitt
+     */
+    @Override
+    Rectangle requiredRegion(Rectangle region, int width, int height) {
+        Rectangle expanded = new Rectangle(region);
+        expanded.grow(radius, radius);
+        return expanded.intersection(new Rectangle(0, 0, width, height));
+    }
+
+    /**
+     * Berechnet einen Ausgabeausschnitt. Da der Eingangsausschnitt den vollen Fensterrand enthält und nur an den
+     * Kanten des Gesamtbilds beschnitten ist, kann er wie ein eigenständiges Bild gefiltert werden.
+     */
+    @Override
+    void processRegion(int[] source, int[] mask, Rectangle sourceRegion, int[] result, Rectangle resultRegion,
+            int width, int height) {
+        if (useMask && mask == null) {
+            throw new IllegalArgumentException("No mask image provided.");
+        }
+        int[] filtered = new int[sourceRegion.width * sourceRegion.height];
+        processRows(source, useMask ? mask : null, filtered, sourceRegion.width, sourceRegion.height,
+                resultRegion.y - sourceRegion.y, resultRegion.y - sourceRegion.y + resultRegion.height,
+                new ColumnHistograms(sourceRegion.width));
+        int[] cropped = Regions.crop(filtered, sourceRegion, resultRegion);
+        System.arraycopy(cropped, 0, result, 0, cropped.length);
+    }
+
+    /**
+     * Zusätzlich zu den Bildpuffern belegt jeder beteiligte Thread einen Satz Spaltenhistogramme.
+     */
+    @Override
+    long estimatePeakBytes(int width, int height, boolean withMask) {
+        ExecutionProfile profile = AutoTuner.profileFor(getClass(), width, height);
+        int stripHeight = stripHeight(profile);
+        int threads = Math.max(1, Math.min(profile.getThreads(), (height + stripHeight - 1) / stripHeight));
+        long histogramBytes = 4L * width * (CHANNELS * (BINS + COARSE_BINS) + 1);
+        return super.estimatePeakBytes(width, height, withMask) + threads * histogramBytes;
+    }
+}
\ No newline at end of file
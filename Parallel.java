@@ -0,0 +1,108 @@
+package filters;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verteilt die Zeilen eines Bilds in Streifen auf mehrere Threads.
+ * Der aufrufende Thread arbeitet mit; die übrigen Threads stammen aus einem gemeinsamen Pool von Daemon-Threads.
+ */
+final class Parallel {
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+    private static final ExecutorService POOL = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "filters-parallel-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private Parallel() {
+    }
+
+    /**
+     * Die Arbeit für einen Streifen von Zeilen.
+     */
+    interface StripTask {
+        void run(int fromY, int toY);
+    }
+
+    /**
+     * Bearbeitet alle Zeilen [0, height) in Streifen der Höhe stripHeight mit bis zu threads Threads.
+     *
+     * @param height      die Anzahl der Zeilen
+     * @param stripHeight die Höhe eines Streifens
+     * @param threads     die maximale Anzahl der Threads
+     * @param task        die Arbeit für einen Streifen
+     */
+    static void forEachStrip(int height, int stripHeight, int threads, StripTask task) {
+        int strips = (height + stripHeight - 1) / stripHeight;
+        int workers = Math.min(threads, strips);
+        if (workers <= 1) {
+            for (int fromY = 0; fromY < height; fromY += stripHeight) {
+                task.run(fromY, Math.min(height, fromY + stripHeight));
+            }
+            return;
+        }
+
+        AtomicInteger nextStrip = new AtomicInteger();
+        Runnable worker = () -> {
+            int strip;
+            while ((strip = nextStrip.getAndIncrement()) < strips) {
+                int fromY = strip * stripHeight;
+                task.run(fromY, Math.min(height, fromY + stripHeight));
+            }
+        };
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 1; i < workers; i++) {
+            futures.add(POOL.submit(worker));
+        }
+        worker.run();
+        await(futures);
+    }
+
+    /**
+     * Führt alle Aufgaben gleichzeitig aus, jede in einem eigenen Thread, und wartet auf ihr Ende.
+     * Die letzte Aufgabe läuft im aufrufenden Thread.
+     *
+     * @param tasks die Aufgaben
+     */
+    static void runConcurrently(List<Runnable> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (Runnable task : tasks.subList(0, tasks.size() - 1)) {
+            futures.add(POOL.submit(task));
+        }
+        tasks.get(tasks.size() - 1).run();
+        await(futures);
+    }
+
+    /**
+     * Wartet auf alle Threads und gibt den Fehler des ersten fehlgeschlagenen Threads weiter.
+     */
+    private static void await(List<Future<?>> futures) {
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for image strips.", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+    }
+}
\ No newline at end of file
@@ -1,6 +1,7 @@
 package filters;
 
 
+import java.awt.Rectangle;
 import java.awt.image.BufferedImage;
 
 /**
@@ -8,7 +9,9 @@ import java.awt.image.BufferedImage;
  * This class provides a common framework for implementing pixel-based image filters.
  * Subclasses must implement the abstract method `calculate` to define the filter's specific logic.
  */
-public abstract class PixelFilter {
+public abstract class PixelFilter implements Filter {
+    private static final int CACHE_BITS = 12;
+    private static final int CACHE_SIZE = 1 << CACHE_BITS;
 
     /**
      * Applies the filter to the given images.
@@ -23,18 +26,70 @@ public abstract class PixelFilter {
         int height = sourceImage.getHeight();
         BufferedImage resultImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int sourcePixel = sourceImage.getRGB(x, y);
-                int maskPixel = (maskImage != null) ? maskImage.getRGB(x, y) : 0;
-                int processedPixel = calculate(sourcePixel, maskPixel);
-                resultImage.setRGB(x, y, processedPixel);
+        int[] source = sourceImage.getRGB(0, 0, width, height, null, 0, width);
+        int[] mask = (maskImage != null) ? maskImage.getRGB(0, 0, width, height, null, 0, width) : null;
+        int[] result = new int[width * height];
+        ExecutionProfile profile = AutoTuner.profileFor(getClass(), width, height);
+        boolean cached = profile.getBackend() == ExecutionProfile.Backend.LUT;
+        Parallel.forEachStrip(height, profile.getTileHeight(), profile.getThreads(), (fromY, toY) -> {
+            if (cached) {
+                applyCached(source, mask, result, fromY * width, toY * width);
+            } else {
+                apply(source, mask, result, fromY * width, toY * width);
             }
-        }
+        });
+        resultImage.setRGB(0, 0, width, height, result, 0, width);
 
         return resultImage;
     }
 
+    /**
+     * Applies the filter to a range of a packed pixel array.
+     * The results carry a full alpha channel, exactly as they would read back from a TYPE_INT_RGB image.
+     *
+     * @param source the source pixels
+     * @param mask   the mask pixels, or null if no mask is used
+     * @param result the array receiving the filtered pixels
+     * @param from   the first index to process (inclusive)
+     * @param to     the last index to process (exclusive)
+     */
+    void apply(int[] source, int[] mask, int[] result, int from, int to) {
+        for (int i = from; i < to; i++) {
+            int maskPixel = (mask != null) ? mask[i] : 0;
+            result[i] = 0xFF000000 | calculate(source[i], maskPixel);
+        }
+    }
+
+    /**
+     * Applies the filter to a range of a packed pixel array, caching the results of {@link #calculate(int, int)} in a
+     * small direct-mapped table keyed by pixel and mask value. This pays off for images with few distinct colors,
+     * for example after a threshold or on gray images. The cache is local to the call and thus thread-safe.
+     *
+     * @param source the source pixels
+     * @param mask   the mask pixels, or null if no mask is used
+     * @param result the array receiving the filtered pixels
+     * @param from   the first index to process (inclusive)
+     * @param to     the last index to process (exclusive)
+     */
+    void applyCached(int[] source, int[] mask, int[] result, int from, int to) {
+        int[] keyPixels = new int[CACHE_SIZE];
+        int[] keyMasks = new int[CACHE_SIZE];
+        boolean[] used = new boolean[CACHE_SIZE];
+        int[] values = new int[CACHE_SIZE];
+        for (int i = from; i < to; i++) {
+            int pixel = source[i];
+            int maskPixel = (mask != null) ? mask[i] : 0;
+            int slot = ((pixel ^ maskPixel * 0x85EBCA6B) * 0x9E3779B1) >>> (32 - CACHE_BITS);
+            if (!used[slot] || keyPixels[slot] != pixel || keyMasks[slot] != maskPixel) {
+                used[slot] = true;
+                keyPixels[slot] = pixel;
+                keyMasks[slot] = maskPixel;
+                values[slot] = 0xFF000000 | calculate(pixel, maskPixel);
+            }
+            result[i] = values[slot];
+        }
+    }
+
     /**
      * Calculates the new pixel color based on the source pixel color and mask pixel color (if available).
      * Subclasses must implement this method to define the specific filter logic.
@@ -44,4 +99,91 @@ public abstract class PixelFilter {
      * @return the new pixel color
      */
     protected abstract int calculate(int pixelColor, int maskColor);
+
+    /**
+     * Tells whether the result for a pixel depends on the whole image rather than on the pixel alone, for example
+     * because thresholds are derived from the image histogram. Such filters are neither fused by the planner nor
+     * computed region by region directly; {@link #resolve(ImageStatistics)} first turns them into the fixed filter
+     * for a given image.
+     *
+     * @return true if {@link #calculate(int, int)} cannot be used on its own
+     */
+    boolean isImageDependent() {
+        return false;
+    }
+
+    /**
+     * Returns the filter that this filter applies to an image with the given statistics. Image-dependent filters
+     * return a filter that no longer depends on the image; all other filters return themselves.
+     *
+     * @param statistics the statistics of the whole input image
+     * @return a filter that is not image-dependent
+     */
+    PixelFilter resolve(ImageStatistics statistics) {
+        return this;
+    }
+
+    /**
+     * Returns every color this filter can produce, independent of its input.
+     * The planner of {@link ChainFilter} uses this to evaluate subsequent stages on a finite set of colors.
+     *
+     * @return the possible output colors with full alpha, or null if the output is not restricted
+     */
+    int[] outputColors() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Returns the input region required to compute the given output region. Pixel filters only need the region itself.
+     *
+     * @param region the output region
+     * @param width  the width of the whole image
+     * @param height the height of the whole image
+     * @return the required input region
+     */
+    Rectangle requiredRegion(Rectangle region, int width, int height) {
+        return region;
+    }
+
+    /**
+     * Computes an output region from an input region that contains it.
+     *
+     * @param source       the pixels of the input region
+     * @param mask         the mask pixels with the same layout as source, or null if no mask is used
+     * @param sourceRegion the input region
+     * @param result       the array receiving the pixels of the output region
+     * @param resultRegion the output region
+     * @param width        the width of the whole image
+     * @param height       the height of the whole image
+     */
+    void processRegion(int[] source, int[] mask, Rectangle sourceRegion, int[] result, Rectangle resultRegion,
+            int width, int height) {
+        for (int y = 0; y < resultRegion.height; y++) {
+            int sourceRow = (resultRegion.y - sourceRegion.y + y) * sourceRegion.width + (resultRegion.x - sourceRegion.x);
+            int resultRow = y * resultRegion.width;
+            for (int x = 0; x < resultRegion.width; x++) {
+                int maskPixel = (mask != null) ? mask[sourceRow + x] : 0;
+                result[resultRow + x] = 0xFF000000 | calculate(source[sourceRow + x], maskPixel);
+            }
+        }
+    }
+
+    /**
+     * Estimates the memory allocated by {@link #process(BufferedImage...)}, excluding the input images.
+     * The source, the optional mask and the result are held as packed arrays in addition to the result image.
+     *
+     * @param width    the image width
+     * @param height   the image height
+     * @param withMask whether a mask image is passed
+     * @return the estimated peak allocation in bytes
+     */
+    long estimatePeakBytes(int width, int height, boolean withMask) {
+        long imageBytes = 4L * width * height;
+        return (withMask ? 4 : 3) * imageBytes;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package filters;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Prüft, dass Ausschnitte, Kacheln und Bildfolgen für bildabhängige Filter dieselben Pixel liefern wie
+ * filter.process auf dem ganzen Bild. Das Testbild ist links dunkel und rechts hell, sodass ein adaptiver
+ * ThresholdFilter auf einem einzelnen Ausschnitt andere Schwellenwerte bestimmen würde als auf dem ganzen Bild.
+ * <p>
+ * Aufruf: {@code java filters.RegionConsistencyCheck [Bildgröße]}; bei einer Abweichung endet das Programm mit dem
+ * Status 1.
+ */
+public class RegionConsistencyCheck {
+
+    /**
+     * Führt die Prüfung aus.
+     *
+     * @param args optional die Kantenlänge des Testbilds
+     */
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 240;
+        BufferedImage image = createSplitImage(size, size);
+        BufferedImage mask = createMask(size, size);
+        Rectangle[] regions = {
+            new Rectangle(0, 0, size / 3, size / 3),
+            new Rectangle(size - size / 4, size / 2, size / 4, size / 4),
+            new Rectangle(size / 3, size / 5, size / 2, size / 2),
+        };
+
+        boolean consistent = true;
+        System.out.println("Filter;Ausschnitte;Kacheln;Bildfolge");
+        for (Map.Entry<String, Filter> entry : createFilters().entrySet()) {
+            Filter filter = entry.getValue();
+            int[] expected = pixels(filter.process(image, mask));
+
+            boolean regionsEqual = true;
+            for (Rectangle region : regions) {
+                int[] actual = pixels(RegionProcessor.process(filter, region, image, mask));
+                regionsEqual &= Arrays.equals(Regions.crop(expected, new Rectangle(0, 0, size, size), region), actual);
+            }
+            LazyFilteredImage lazy = new LazyFilteredImage(filter, size / 4, image, mask);
+            boolean tilesEqual = Arrays.equals(expected, pixels(lazy.getRegion(new Rectangle(0, 0, size, size))));
+            boolean streamEqual = Arrays.equals(expected, pixels(new FrameStream(filter, mask).next(image)));
+
+            System.out.println(entry.getKey() + ";" + regionsEqual + ";" + tilesEqual + ";" + streamEqual);
+            consistent &= regionsEqual && tilesEqual && streamEqual;
+        }
+        if (!consistent) {
+            System.out.println("Fehler: Mindestens ein Ergebnis weicht vom Ergebnis auf dem ganzen Bild ab.");
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Erstellt die geprüften Filter: adaptive ThresholdFilter allein und an verschiedenen Stellen einer Kette.
+     */
+    private static Map<String, Filter> createFilters() {
+        Map<String, Filter> filters = new LinkedHashMap<>();
+        filters.put("otsu(1)", ThresholdFilter.otsu(1));
+        filters.put("otsu(3)", ThresholdFilter.otsu(3));
+
+        ChainFilter first = new ChainFilter(2);
+        first.add(ThresholdFilter.otsu(1));
+        first.add(new PseudoNegativeImage());
+        filters.put("otsu(1)+negativ", first);
+
+        ChainFilter middle = new ChainFilter(3);
+        middle.add(new BlurFilter(5, true));
+        middle.add(ThresholdFilter.otsu(3));
+        middle.add(new PixelGraphicFilter(4, false));
+        filters.put("blur+otsu(3)+pixelGraphic", middle);
+
+        ChainFilter twice = new ChainFilter(4);
+        twice.add(new MonochromeFilter());
+        twice.add(ThresholdFilter.otsu(2));
+        twice.add(new MedianFilter(2, false));
+        twice.add(ThresholdFilter.otsu(1));
+        filters.put("monochrome+otsu(2)+median+otsu(1)", twice);
+        return filters;
+    }
+
+    /**
+     * Liest alle Pixel eines Bilds.
+     */
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**
+     * Erzeugt ein Testbild aus einem dunklen und einem hellen Farbverlauf.
+     */
+    private static BufferedImage createSplitImage(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int value = (x < width / 2) ? (x + y) * 80 / (width + height) : 160 + (x + y) * 95 / (width + height);
+                int red = value;
+                int green = (value * 3 + y) / 4;
+                int blue = 255 - value;
+                image.setRGB(x, y, (red << 16) | (green << 8) | blue);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Erzeugt eine Maske mit schrägen Streifen.
+     */
+    private static BufferedImage createMask(int width, int height) {
+        BufferedImage mask = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                mask.setRGB(x, y, ((x + y) / 16) % 3 == 0 ? 0x000000 : 0xFFFFFF);
+            }
+        }
+        return mask;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+package filters;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Der RegionProcessor wendet einen Filter nur auf einen Ausschnitt des Bilds an (Region of Interest).
+ * <p>
+ * Berechnet wird nur der Ausschnitt selbst und die Umgebung, die der Filter dafür benötigt: bei einem AreaFilter
+ * die Blöcke, die den Ausschnitt schneiden, beim MedianFilter ein Rand in Größe des Radius. In einer ChainFilter
+ * berechnet jede Stufe nur den Ausschnitt, den die folgenden Stufen benötigen. Filter, die keine Ausschnitte
+ * unterstützen, werden auf das ganze Bild angewendet und danach zugeschnitten.
+ * <p>
+ * Bildabhängige Filter wie ein adaptiver ThresholdFilter verwenden die Schwellenwerte des ganzen Bilds, nicht die
+ * des Ausschnitts: Sie werden vorher anhand der Statistik ihres vollständigen Eingangsbilds durch feste Filter
+ * ersetzt. Der Ausschnitt stimmt so immer mit dem entsprechenden Ausschnitt von filter.process überein.
+ */
+public class RegionProcessor {
+
+    private RegionProcessor() {
+    }
+
+    /**
+     * Wendet den Filter auf einen Ausschnitt an.
+     *
+     * @param filter der anzuwendende Filter
+     * @param region der gewünschte Ausschnitt; er wird auf die Bildgrenzen beschränkt
+     * @param images das Quellbild und optional die Maske
+     * @return ein Bild in der Größe des Ausschnitts, das mit dem entsprechenden Ausschnitt von filter.process übereinstimmt
+     */
+    public static BufferedImage process(Filter filter, Rectangle region, BufferedImage... images) {
+        if (images.length == 0) {
+            throw new IllegalArgumentException("No input images provided.");
+        }
+        BufferedImage sourceImage = images[0];
+        BufferedImage maskImage = images.length > 1 ? images[1] : null;
+        int width = sourceImage.getWidth();
+        int height = sourceImage.getHeight();
+        Rectangle clipped = region.intersection(new Rectangle(0, 0, width, height));
+        if (clipped.isEmpty()) {
+            throw new IllegalArgumentException("Region lies outside the image.");
+        }
+
+        Filter resolved = Regions.resolve(filter, sourceImage, maskImage, new ImageStatistics.Cache());
+        BufferedImage resultImage = new BufferedImage(clipped.width, clipped.height, BufferedImage.TYPE_INT_RGB);
+        resultImage.setRGB(0, 0, clipped.width, clipped.height,
+                processRegion(resolved, clipped, sourceImage, maskImage), 0, clipped.width);
+        return resultImage;
+    }
+
+    /**
+     * Berechnet die Pixel eines Ausschnitts, der innerhalb des Bilds liegt.
+     *
+     * @param filter      der anzuwendende Filter; bildabhängige Filter müssen mit {@link Regions#resolve} aufgelöst
+     *                    sein, sonst werden sie auf das ganze Bild angewendet
+     * @param region      der Ausschnitt
+     * @param sourceImage das Quellbild
+     * @param maskImage   die Maske oder null
+     * @return die Pixel des Ausschnitts
+     */
+    static int[] processRegion(Filter filter, Rectangle region, BufferedImage sourceImage, BufferedImage maskImage) {
+        int width = sourceImage.getWidth();
+        int height = sourceImage.getHeight();
+        if (!Regions.supports(filter)) {
+            BufferedImage full = (maskImage != null) ? filter.process(sourceImage, maskImage) : filter.process(sourceImage);
+            return Regions.read(full, region);
+        }
+
+        Rectangle required = Regions.requiredRegion(filter, region, width, height);
+        int[] source = Regions.read(sourceImage, required);
+        int[] mask = (maskImage != null) ? Regions.read(maskImage, required) : null;
+        int[] result = new int[region.width * region.height];
+        Regions.process(filter, source, mask, required, result, region, width, height);
+        return result;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,152 @@
+package filters;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+
+/**
+ * Hilfsfunktionen für die Berechnung von Bildausschnitten.
+ * <p>
+ * Ein Ausschnitt wird als Pixel-Array zusammen mit dem Rechteck beschrieben, das er im Gesamtbild abdeckt.
+ * Jeder unterstützte Filter kann angeben, welchen Eingangsausschnitt er für einen Ausgabeausschnitt benötigt,
+ * und den Ausgabeausschnitt allein aus diesem Eingangsausschnitt berechnen. Bildabhängige Filter wie ein adaptiver
+ * ThresholdFilter werden dazu vorher mit {@link #resolve} durch die festen Filter für das ganze Bild ersetzt.
+ */
+final class Regions {
+
+    private Regions() {
+    }
+
+    /**
+     * Gibt an, ob der Filter Ausschnitte berechnen kann.
+     *
+     * @param filter der Filter
+     * @return true, wenn requiredRegion und process für den Filter verwendet werden können
+     */
+    static boolean supports(Object filter) {
+        if (filter instanceof ChainFilter) {
+            for (Filter stage : ((ChainFilter) filter).getPlannedFilters()) {
+                if (!supports(stage)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (filter instanceof PixelFilter) {
+            // Bildabhängige Filter würden auf einem Ausschnitt andere Werte ermitteln als auf dem ganzen Bild
+            return !((PixelFilter) filter).isImageDependent();
+        }
+        return filter instanceof AreaFilter;
+    }
+
+    /**
+     * Gibt an, ob das Ergebnis des Filters für ein Pixel vom ganzen Bild abhängt, bei einer ChainFilter von einer
+     * ihrer Stufen.
+     *
+     * @param filter der Filter
+     * @return true, wenn der Filter vor der Berechnung von Ausschnitten aufgelöst werden muss
+     */
+    static boolean dependsOnImage(Object filter) {
+        if (filter instanceof ChainFilter) {
+            for (Filter stage : ((ChainFilter) filter).getPlannedFilters()) {
+                if (dependsOnImage(stage)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        return filter instanceof PixelFilter && ((PixelFilter) filter).isImageDependent();
+    }
+
+    /**
+     * Ersetzt bildabhängige Filter durch die festen Filter, die sie auf das ganze Bild anwenden würden. Ausschnitte
+     * des aufgelösten Filters stimmen daher mit den Ausschnitten von filter.process auf dem ganzen Bild überein.
+     *
+     * @param filter     der Filter
+     * @param image      das ganze Eingangsbild
+     * @param mask       die Maske oder null
+     * @param statistics der Zwischenspeicher für die Bildstatistik dieses Durchlaufs
+     * @return der aufgelöste Filter, oder filter selbst, wenn er nicht vom Bild abhängt
+     */
+    static Filter resolve(Filter filter, BufferedImage image, BufferedImage mask, ImageStatistics.Cache statistics) {
+        if (filter instanceof ChainFilter) {
+            return ((ChainFilter) filter).resolve(image, mask, statistics);
+        }
+        if (filter instanceof PixelFilter && ((PixelFilter) filter).isImageDependent()) {
+            return ((PixelFilter) filter).resolve(statistics.get(image));
+        }
+        return filter;
+    }
+
+    /**
+     * Liefert den Eingangsausschnitt, den der Filter für einen Ausgabeausschnitt benötigt.
+     *
+     * @param filter der Filter
+     * @param region der Ausgabeausschnitt
+     * @param width  die Breite des Gesamtbilds
+     * @param height die Höhe des Gesamtbilds
+     * @return der benötigte Eingangsausschnitt innerhalb des Gesamtbilds
+     */
+    static Rectangle requiredRegion(Object filter, Rectangle region, int width, int height) {
+        if (filter instanceof ChainFilter) {
+            return ((ChainFilter) filter).requiredRegion(region, width, height);
+        }
+        if (filter instanceof AreaFilter) {
+            return ((AreaFilter) filter).requiredRegion(region, width, height);
+        }
+        return ((PixelFilter) filter).requiredRegion(region, width, height);
+    }
+
+    /**
+     * Berechnet einen Ausgabeausschnitt aus einem Eingangsausschnitt.
+     *
+     * @param filter        der Filter
+     * @param source        die Pixel des Eingangsausschnitts
+     * @param mask          die Maskenpixel mit derselben Geometrie wie source, oder null
+     * @param sourceRegion  der Eingangsausschnitt; er muss requiredRegion(resultRegion) enthalten
+     * @param result        das Array für die Pixel des Ausgabeausschnitts
+     * @param resultRegion  der Ausgabeausschnitt
+     * @param width         die Breite des Gesamtbilds
+     * @param height        die Höhe des Gesamtbilds
+     */
+    static void process(Object filter, int[] source, int[] mask, Rectangle sourceRegion, int[] result,
+            Rectangle resultRegion, int width, int height) {
+        if (filter instanceof ChainFilter) {
+            ((ChainFilter) filter).processRegion(source, mask, sourceRegion, result, resultRegion, width, height);
+        } else if (filter instanceof AreaFilter) {
+            ((AreaFilter) filter).processRegion(source, mask, sourceRegion, result, resultRegion, width, height);
+        } else {
+            ((PixelFilter) filter).processRegion(source, mask, sourceRegion, result, resultRegion, width, height);
+        }
+    }
+
+    /**
+     * Liest einen Ausschnitt eines Bilds.
+     *
+     * @param image  das Bild
+     * @param region der Ausschnitt
+     * @return die Pixel des Ausschnitts
+     */
+    static int[] read(BufferedImage image, Rectangle region) {
+        return image.getRGB(region.x, region.y, region.width, region.height, null, 0, region.width);
+    }
+
+    /**
+     * Kopiert einen Teilausschnitt aus einem größeren Ausschnitt.
+     *
+     * @param data       die Pixel des größeren Ausschnitts
+     * @param dataRegion der größere Ausschnitt
+     * @param region     der Teilausschnitt; er muss in dataRegion liegen
+     * @return die Pixel des Teilausschnitts
+     */
+    static int[] crop(int[] data, Rectangle dataRegion, Rectangle region) {
+        if (dataRegion.equals(region)) {
+            return data;
+        }
+        int[] cropped = new int[region.width * region.height];
+        for (int y = 0; y < region.height; y++) {
+            int dataRow = (region.y - dataRegion.y + y) * dataRegion.width + (region.x - dataRegion.x);
+            System.arraycopy(data, dataRow, cropped, y * region.width, region.width);
+        }
+        return cropped;
+    }
+}
\ No newline at end of file
@@ -1,10 +1,23 @@
 package filters;
 
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+
 /**
  * Der ThresholdFilter ist ein Filter, der die Graustufenwerte von Pixeln in ein Bild basierend auf Schwellenwerten ändert.
+ * <p>
+ * Mit {@link #otsu(int)} entsteht ein adaptiver Filter, der seine Schwellenwerte für jedes Bild nach dem Verfahren
+ * von Otsu aus dem Histogramm der {@link ImageStatistics} bestimmt.
  */
 public class ThresholdFilter extends PixelFilter implements Filter {
     private int[] thresholds;
+    private int[] grayLevels;
+    // Im adaptiven Modus die Anzahl der zu bestimmenden Schwellenwerte, sonst 0
+    private int adaptiveThresholds;
+    // Für bestimmte Schwellenwerte die Ausgabefarbe je Graustufe, sonst null
+    private int[] classColors;
+    // Im adaptiven Modus der zuletzt bestimmte feste Filter; Bilder mit denselben Schwellenwerten teilen ihn
+    private volatile ThresholdFilter lastResolved;
 
     /**
      * Konstruktor, der die Schwellenwerte für den Filter festlegt.
@@ -13,20 +26,232 @@ public class ThresholdFilter extends PixelFilter implements Filter {
      */
     public ThresholdFilter(int... thresholds) {
         this.thresholds = thresholds;
+        this.grayLevels = calculateGrayLevels(thresholds);
     }
 
     /**
-     * Berechnet den neuen Farbwert für den gegebenen Pixel- und Maskenfarbwert basierend auf den Schwellenwerten.
+     * Erstellt einen adaptiven ThresholdFilter. Die Schwellenwerte werden für jedes Bild so gewählt, dass die Varianz
+     * zwischen den Klassen der Graustufen maximal wird (Otsu, bei mehreren Schwellenwerten Multi-Otsu). Jede Klasse
+     * wird auf die Graustufe abgebildet, die auch ein ThresholdFilter mit diesen Schwellenwerten verwendet.
+     * Das Histogramm wird bei jedem Aufruf aus dem Bild berechnet; mit
+     * {@link #process(ImageStatistics, BufferedImage...)} kann eine bereits berechnete {@link ImageStatistics}
+     * übergeben werden. Ausschnitte und Kacheln (RegionProcessor, LazyFilteredImage) verwenden immer die
+     * Schwellenwerte des ganzen Bilds.
      *
-     * @param pixelColor Der Farbwert des Pixels.
-     * @param maskColor  Der Farbwert der Maske.
-     * @return Der berechnete Farbwert für den Pixel.
+     * @param thresholdCount Die Anzahl der Schwellenwerte, 1 für ein Schwarz-Weiß-Bild.
+     * @return Der adaptive Filter.
+     */
+    public static ThresholdFilter otsu(int thresholdCount) {
+        if (thresholdCount < 1 || thresholdCount > 255) {
+            throw new IllegalArgumentException("Threshold count must be between 1 and 255.");
+        }
+        ThresholdFilter filter = new ThresholdFilter();
+        filter.adaptiveThresholds = thresholdCount;
+        filter.grayLevels = null;
+        return filter;
+    }
+
+    /**
+     * Erstellt einen Filter, der jede Graustufe der Klasse zwischen zwei bestimmten Schwellenwerten zuordnet.
+     *
+     * @param thresholds Die aufsteigenden Schwellenwerte; eine Graustufe gleich einem Schwellenwert gehört zur
+     *                   unteren Klasse.
+     * @return Der Filter.
+     */
+    private static ThresholdFilter classifying(int[] thresholds) {
+        ThresholdFilter filter = new ThresholdFilter(thresholds);
+        filter.classColors = new int[256];
+        int level = 0;
+        for (int gray = 0; gray < 256; gray++) {
+            while (level < thresholds.length && gray > thresholds[level]) {
+                level++;
+            }
+            int value = filter.grayLevels[level];
+            filter.classColors[gray] = (0xFF << 24) | (value << 16) | (value << 8) | value;
+        }
+        return filter;
+    }
+
+    /**
+     * Liefert die Schwellenwerte, die der Filter für ein Bild verwendet.
+     *
+     * @param image Das Bild.
+     * @return Die festen Schwellenwerte oder im adaptiven Modus die für dieses Bild bestimmten.
+     */
+    public int[] thresholdsFor(BufferedImage image) {
+        if (adaptiveThresholds == 0) {
+            return thresholds.clone();
+        }
+        return thresholdsFor(ImageStatistics.compute(image));
+    }
+
+    /**
+     * Liefert die Schwellenwerte, die der Filter für ein Bild mit der gegebenen Statistik verwendet.
+     *
+     * @param statistics Die Statistik des Bilds.
+     * @return Die festen Schwellenwerte oder im adaptiven Modus die aus der Statistik bestimmten.
+     */
+    public int[] thresholdsFor(ImageStatistics statistics) {
+        if (adaptiveThresholds == 0) {
+            return thresholds.clone();
+        }
+        // Wie calculate wertet der Filter den Rotkanal als Graustufe aus
+        long[] histogram = statistics.getHistogram(ImageStatistics.Channel.RED);
+        return calculateOtsuThresholds(histogram, adaptiveThresholds);
+    }
+
+    /**
+     * Bestimmt die Schwellenwerte mit maximaler Varianz zwischen den Klassen. Für eine Klasse von a bis b ist ihr
+     * Beitrag S(a, b)² / N(a, b) mit der Summe S und der Anzahl N der Werte; die Summe der Beiträge wird per
+     * dynamischer Programmierung über alle Klassengrenzen maximiert.
+     *
+     * @param histogram      Das Histogramm mit 256 Einträgen.
+     * @param thresholdCount Die Anzahl der Schwellenwerte.
+     * @return Die aufsteigenden Schwellenwerte.
+     */
+    static int[] calculateOtsuThresholds(long[] histogram, int thresholdCount) {
+        int bins = histogram.length;
+        long[] counts = new long[bins + 1];
+        double[] sums = new double[bins + 1];
+        for (int value = 0; value < bins; value++) {
+            counts[value + 1] = counts[value] + histogram[value];
+            sums[value + 1] = sums[value] + (double) histogram[value] * value;
+        }
+
+        int classes = thresholdCount + 1;
+        // best[c][end]: größte Summe der Beiträge, wenn die Werte 0..end-1 in c+1 Klassen aufgeteilt werden
+        double[][] best = new double[classes][bins + 1];
+        int[][] start = new int[classes][bins + 1];
+        for (int end = 1; end <= bins; end++) {
+            best[0][end] = contribution(counts, sums, 0, end);
+        }
+        for (int c = 1; c < classes; c++) {
+            for (int end = c + 1; end <= bins; end++) {
+                best[c][end] = Double.NEGATIVE_INFINITY;
+                for (int split = c; split < end; split++) {
+                    double value = best[c - 1][split] + contribution(counts, sums, split, end);
+                    if (value > best[c][end]) {
+                        best[c][end] = value;
+                        start[c][end] = split;
+                    }
+                }
+            }
+        }
+
+        int[] result = new int[thresholdCount];
+        int end = bins;
+        for (int c = classes - 1; c > 0; c--) {
+            int split = start[c][end];
+            result[c - 1] = split - 1;
+            end = split;
+        }
+        return result;
+    }
+
+    /**
+     * Der Beitrag der Werte from..to-1 zur Varianz zwischen den Klassen.
+     */
+    private static double contribution(long[] counts, double[] sums, int from, int to) {
+        long count = counts[to] - counts[from];
+        if (count == 0) {
+            return 0;
+        }
+        double sum = sums[to] - sums[from];
+        return sum * sum / count;
+    }
+
+    /**
+     * Im adaptiven Modus werden zuerst die Schwellenwerte für das Bild bestimmt und dann wie bei festen
+     * Schwellenwerten angewendet.
+     *
+     * @param images Das Quellbild und optional die Maske.
+     * @return Das verarbeitete Bild.
      */
     @Override
-    protected int calculate(int pixelColor, int maskColor) {
-        int grayLevel = (pixelColor >> 16) & 0xFF;
+    public BufferedImage process(BufferedImage... images) {
+        if (adaptiveThresholds == 0) {
+            return super.process(images);
+        }
+        if (images.length == 0) {
+            throw new IllegalArgumentException("No input images provided.");
+        }
+        return resolve(ImageStatistics.compute(images[0])).process(images);
+    }
 
-        // Berechnung der Graustufen basierend auf den übergebenen Schwellenwerten
+    /**
+     * Wie {@link #process(BufferedImage...)}, bestimmt die Schwellenwerte im adaptiven Modus aber aus einer bereits
+     * berechneten Statistik. Die Statistik muss zum aktuellen Inhalt des Quellbilds gehören.
+     *
+     * @param statistics Die Statistik des Quellbilds.
+     * @param images     Das Quellbild und optional die Maske.
+     * @return Das verarbeitete Bild.
+     */
+    public BufferedImage process(ImageStatistics statistics, BufferedImage... images) {
+        if (adaptiveThresholds == 0) {
+            return super.process(images);
+        }
+        if (images.length == 0) {
+            throw new IllegalArgumentException("No input images provided.");
+        }
+        return resolve(statistics).process(images);
+    }
+
+    /**
+     * Wie {@link #process(BufferedImage...)}, entnimmt die Statistik im adaptiven Modus aber dem Zwischenspeicher
+     * eines Durchlaufs, sodass mehrere Filter auf demselben Eingangsbild sie nur einmal berechnen.
+     *
+     * @param statistics Der Zwischenspeicher für die Bildstatistik dieses Durchlaufs.
+     * @param images     Das Quellbild und optional die Maske.
+     * @return Das verarbeitete Bild.
+     */
+    public BufferedImage process(ImageStatistics.Cache statistics, BufferedImage... images) {
+        if (adaptiveThresholds == 0) {
+            return super.process(images);
+        }
+        if (images.length == 0) {
+            throw new IllegalArgumentException("No input images provided.");
+        }
+        return resolve(statistics.get(images[0])).process(images);
+    }
+
+    /**
+     * Liefert im adaptiven Modus den festen Filter mit den aus der Statistik bestimmten Schwellenwerten, sonst den
+     * Filter selbst.
+     *
+     * @param statistics Die Statistik des ganzen Eingangsbilds.
+     * @return Der Filter, der die Graustufen für dieses Bild zuordnet.
+     */
+    @Override
+    ThresholdFilter resolve(ImageStatistics statistics) {
+        if (adaptiveThresholds == 0) {
+            return this;
+        }
+        int[] imageThresholds = thresholdsFor(statistics);
+        ThresholdFilter resolved = lastResolved;
+        if (resolved == null || !Arrays.equals(resolved.thresholds, imageThresholds)) {
+            resolved = classifying(imageThresholds);
+            lastResolved = resolved;
+        }
+        return resolved;
+    }
+
+    /**
+     * Im adaptiven Modus hängt das Ergebnis vom ganzen Bild ab.
+     *
+     * @return true im adaptiven Modus
+     */
+    @Override
+    boolean isImageDependent() {
+        return adaptiveThresholds > 0;
+    }
+
+    /**
+     * Berechnet die Graustufen, auf die der Filter abbildet, aus den Schwellenwerten.
+     *
+     * @param thresholds Die Schwellenwerte.
+     * @return Die Graustufen.
+     */
+    private static int[] calculateGrayLevels(int[] thresholds) {
         int[] grayLevels = new int[thresholds.length + 1];
         grayLevels[0] = 0;
         grayLevels[grayLevels.length - 1] = 255;
@@ -34,6 +259,25 @@ public class ThresholdFilter extends PixelFilter implements Filter {
         for (int i = 1; i < grayLevels.length - 1; i++) {
             grayLevels[i] = (thresholds[i - 1] + thresholds[i]) / 2;
         }
+        return grayLevels;
+    }
+
+    /**
+     * Berechnet den neuen Farbwert für den gegebenen Pixel- und Maskenfarbwert basierend auf den Schwellenwerten.
+     *
+     * @param pixelColor Der Farbwert des Pixels.
+     * @param maskColor  Der Farbwert der Maske.
+     * @return Der berechnete Farbwert für den Pixel.
+     */
+    @Override
+    protected int calculate(int pixelColor, int maskColor) {
+        if (adaptiveThresholds > 0) {
+            throw new IllegalStateException("Adaptive thresholds depend on the whole image; use process.");
+        }
+        int grayLevel = (pixelColor >> 16) & 0xFF;
+        if (classColors != null) {
+            return classColors[grayLevel];
+        }
 
         // Suche des nächstgelegenen Graustufenwerts basierend auf den berechneten Werten
         int closestGrayLevel = grayLevels[0];
@@ -46,4 +290,30 @@ public class ThresholdFilter extends PixelFilter implements Filter {
 
         return (0xFF << 24) | (closestGrayLevel << 16) | (closestGrayLevel << 8) | closestGrayLevel;
     }
+
+    /**
+     * Der Filter liefert nur die aus den Schwellenwerten berechneten Graustufen.
+     *
+     * @return Die möglichen Ausgabefarben.
+     */
+    @Override
+    int[] outputColors() {
+        if (grayLevels == null) {
+            return null;
+        }
+        int[] colors = new int[grayLevels.length];
+        for (int i = 0; i < grayLevels.length; i++) {
+            int level = grayLevels[i];
+            colors[i] = (0xFF << 24) | (level << 16) | (level << 8) | level;
+        }
+        return colors;
+    }
+
+    @Override
+    public String toString() {
+        if (adaptiveThresholds > 0) {
+            return "ThresholdFilter[Otsu, " + adaptiveThresholds + "]";
+        }
+        return "ThresholdFilter" + Arrays.toString(thresholds);
+    }
 }
\ No newline at end of file